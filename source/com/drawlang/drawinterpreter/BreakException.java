@@ -1,8 +0,0 @@
-package com.drawlang.drawinterpreter;
-
-class BreakException extends RuntimeException {
-	BreakException() {
-		super("break exception");
-	}
-}
-
@@ -0,0 +1,12 @@
+package com.drawlang.drawinterpreter;
+
+// holds a local variable that closures capture, the frame declaring it
+// and every closure over it share the cell instead of the whole frame
+
+class Cell {
+	Object value;
+
+	Cell(Object value) {
+		this.value = value;
+	}
+}
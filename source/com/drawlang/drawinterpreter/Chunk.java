@@ -0,0 +1,53 @@
+package com.drawlang.drawinterpreter;
+
+// compiled bytecode for a function body or the top level script
+
+class Chunk {
+	final String name;
+	// function the chunk was compiled from, null for the script
+	final Expr.Function declaration;
+	final int[] code;
+	final Object[] constants;
+	// number of slots in the environment created for each call
+	final int frameSize;
+	// most values the chunk ever has on the operand stack at once
+	final int maxStack;
+
+	Chunk(String name, Expr.Function declaration, int[] code, Object[] constants, int frameSize, int maxStack) {
+		this.name = name;
+		this.declaration = declaration;
+		this.code = code;
+		this.constants = constants;
+		this.frameSize = frameSize;
+		this.maxStack = maxStack;
+	}
+
+	// returns a readable listing of the instructions, for debugging
+	String disassemble() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("== ").append(name == null ? "<script>" : name).append(" ==\n");
+		for (int ip = 0; ip < code.length;) {
+			int op = code[ip];
+			builder.append(String.format("%04d %-20s", ip, OpCode.NAMES[op]));
+			for (int i = 1; i <= OpCode.OPERANDS[op]; i++) {
+				builder.append(' ').append(code[ip + i]);
+			}
+			builder.append('\n');
+			ip += 1 + OpCode.OPERANDS[op];
+		}
+
+		// lists the chunks of functions and methods defined in this one
+		for (Object constant : constants) {
+			if (constant instanceof Chunk) {
+				builder.append(((Chunk) constant).disassemble());
+			} else if (constant instanceof Compiler.ClassTemplate) {
+				Compiler.ClassTemplate template = (Compiler.ClassTemplate) constant;
+				for (Chunk method : template.methods)
+					builder.append(method.disassemble());
+				for (Chunk method : template.classMethods)
+					builder.append(method.disassemble());
+			}
+		}
+		return builder.toString();
+	}
+}
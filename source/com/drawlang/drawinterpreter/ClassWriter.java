@@ -0,0 +1,139 @@
+package com.drawlang.drawinterpreter;
+
+import java.io.*;
+import java.util.*;
+
+// writes the minimum of the jvm class file format the JIT needs: a
+// constant pool and methods with a code attribute. Classes are written
+// as version 49 so the verifier infers stack map frames itself
+
+class ClassWriter {
+	private static final int VERSION = 49;
+
+	static final int ACC_PUBLIC = 0x0001;
+	static final int ACC_FINAL = 0x0010;
+	static final int ACC_SUPER = 0x0020;
+	static final int ACC_SYNTHETIC = 0x1000;
+
+	private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	private final DataOutputStream poolData = new DataOutputStream(pool);
+	private int poolCount = 1;
+	// reuses constant pool entries that are requested more than once
+	private final Map<String, Integer> entries = new HashMap<>();
+
+	private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+	private final DataOutputStream methodData = new DataOutputStream(methods);
+	private int methodCount = 0;
+
+	int utf8(String value) {
+		return entry("U" + value, 1, 1, data -> data.writeUTF(value));
+	}
+
+	int classRef(String internalName) {
+		int name = utf8(internalName);
+		return entry("C" + internalName, 7, 1, data -> data.writeShort(name));
+	}
+
+	int doubleConstant(double value) {
+		// doubles take up two entries in the pool
+		return entry("D" + Double.doubleToRawLongBits(value), 6, 2, data -> data.writeDouble(value));
+	}
+
+	int fieldRef(String owner, String name, String descriptor) {
+		return memberRef(9, owner, name, descriptor);
+	}
+
+	int methodRef(String owner, String name, String descriptor) {
+		return memberRef(10, owner, name, descriptor);
+	}
+
+	int interfaceMethodRef(String owner, String name, String descriptor) {
+		return memberRef(11, owner, name, descriptor);
+	}
+
+	private int memberRef(int tag, String owner, String name, String descriptor) {
+		int ownerIndex = classRef(owner);
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		int nameAndType = entry("N" + name + " " + descriptor, 12, 1, data -> {
+			data.writeShort(nameIndex);
+			data.writeShort(descriptorIndex);
+		});
+		return entry(tag + owner + "." + name + descriptor, tag, 1, data -> {
+			data.writeShort(ownerIndex);
+			data.writeShort(nameAndType);
+		});
+	}
+
+	private interface EntryWriter {
+		void write(DataOutputStream data) throws IOException;
+	}
+
+	private int entry(String key, int tag, int size, EntryWriter writer) {
+		Integer index = entries.get(key);
+		if (index != null)
+			return index;
+
+		try {
+			poolData.writeByte(tag);
+			writer.write(poolData);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		entries.put(key, poolCount);
+		poolCount += size;
+		return poolCount - size;
+	}
+
+	void method(int access, String name, String descriptor, byte[] code, int maxStack, int maxLocals) {
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		int codeIndex = utf8("Code");
+		try {
+			methodData.writeShort(access);
+			methodData.writeShort(nameIndex);
+			methodData.writeShort(descriptorIndex);
+			// a single code attribute with no exception table
+			methodData.writeShort(1);
+			methodData.writeShort(codeIndex);
+			methodData.writeInt(12 + code.length);
+			methodData.writeShort(maxStack);
+			methodData.writeShort(maxLocals);
+			methodData.writeInt(code.length);
+			methodData.write(code);
+			methodData.writeShort(0);
+			methodData.writeShort(0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		methodCount++;
+	}
+
+	byte[] toByteArray(String name, String superName) {
+		int thisClass = classRef(name);
+		int superClass = classRef(superName);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(bytes);
+		try {
+			data.writeInt(0xCAFEBABE);
+			data.writeShort(0);
+			data.writeShort(VERSION);
+			data.writeShort(poolCount);
+			pool.writeTo(data);
+			data.writeShort(ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC);
+			data.writeShort(thisClass);
+			data.writeShort(superClass);
+			// no interfaces or fields
+			data.writeShort(0);
+			data.writeShort(0);
+			data.writeShort(methodCount);
+			methods.writeTo(data);
+			// no class attributes
+			data.writeShort(0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,716 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.*;
+
+import static com.drawlang.drawinterpreter.OpCode.*;
+
+// compiles a resolved syntax tree into bytecode chunks for the vm. Local
+// variables use the slots and cells the resolver assigned, so compiled
+// code builds the same frames the tree walking interpreter does
+
+class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+	private final String name;
+	private final Expr.Function declaration;
+
+	private int[] code = new int[64];
+	private int count = 0;
+	private final List<Object> constants = new ArrayList<>();
+	// tracks how many values are on the operand stack
+	private int stackDepth = 0;
+	private int maxStack = 0;
+
+	// break and continue targets of the loops being compiled
+	private static class Loop {
+		// where continue jumps to, -1 if it is not known yet
+		final int start;
+		final List<Integer> breaks = new ArrayList<>();
+		final List<Integer> continues = new ArrayList<>();
+
+		Loop(int start) {
+			this.start = start;
+		}
+	}
+
+	private final Stack<Loop> loops = new Stack<>();
+
+	private Compiler(String name, Expr.Function declaration) {
+		this.name = name;
+		this.declaration = declaration;
+	}
+
+	// compiles the top level statements of a script, whose frame
+	// has size slots
+	static Chunk compile(List<Stmt> statements, int size) {
+		Compiler compiler = new Compiler(null, null);
+		for (Stmt statement : statements) {
+			compiler.compile(statement);
+		}
+		compiler.emit(NULL);
+		compiler.emit(RETURN);
+		return compiler.finish(size);
+	}
+
+	private static Chunk compileFunction(String name, Expr.Function function) {
+		Compiler compiler = new Compiler(name, function);
+		for (Stmt statement : function.body) {
+			compiler.compile(statement);
+		}
+		// functions without a return statement return null
+		compiler.emit(NULL);
+		compiler.emit(RETURN);
+		return compiler.finish(function.size);
+	}
+
+	private Chunk finish(int frameSize) {
+		return new Chunk(name, declaration, Arrays.copyOf(code, count), constants.toArray(), frameSize, maxStack);
+	}
+
+	private void compile(Stmt stmt) {
+		stmt.accept(this);
+	}
+
+	private void compile(Expr expr) {
+		expr.accept(this);
+	}
+
+	// writes an instruction and its operands, updating the stack depth
+	// with the number of values it pushes minus the number it pops
+	private void emit(int op, int... operands) {
+		write(op);
+		for (int operand : operands) {
+			write(operand);
+		}
+		adjust(stackEffect(op, operands));
+	}
+
+	private void write(int value) {
+		if (count == code.length)
+			code = Arrays.copyOf(code, count * 2);
+		code[count++] = value;
+	}
+
+	private void adjust(int effect) {
+		stackDepth += effect;
+		if (stackDepth > maxStack)
+			maxStack = stackDepth;
+	}
+
+	private static int stackEffect(int op, int[] operands) {
+		switch (op) {
+			case CONSTANT:
+			case NULL:
+			case TRUE:
+			case FALSE:
+			case GET_LOCAL:
+			case GET_CELL:
+			case GET_CAPTURED:
+			case GET_GLOBAL:
+			case CLOSURE:
+			case CLASS:
+			case INCREMENT:
+				return 1;
+			case POP:
+			case DEFINE_LOCAL:
+			case DEFINE_CELL:
+			case DEFINE_GLOBAL:
+			case SET_PROPERTY:
+			case GET_INDEX:
+			case ADD:
+			case SUBTRACT:
+			case MULTIPLY:
+			case DIVIDE:
+			case MODULOS:
+			case POWER:
+			case GREATER:
+			case GREATER_EQUAL:
+			case LESS:
+			case LESS_EQUAL:
+			case EQUAL:
+			case NOT_EQUAL:
+			case COMPOUND:
+			case JUMP_IF_FALSE:
+			case JUMP_IF_FALSE_OR_POP:
+			case JUMP_IF_TRUE_OR_POP:
+			case RETURN:
+			case SUPERCLASS:
+			case GET_SUPER:
+			case COMPOUND_PROPERTY:
+			case INCREMENT_INDEX:
+				return -1;
+			case SET_INDEX:
+			case COMPOUND_INDEX:
+				return -2;
+			case CALL:
+			case TAIL_CALL:
+				return -operands[0];
+			case ARRAY:
+				return 1 - operands[0];
+			case INTRINSIC:
+				return 1 - operands[1];
+			default:
+				return 0;
+		}
+	}
+
+	private int constant(Object value) {
+		constants.add(value);
+		return constants.size() - 1;
+	}
+
+	// emits a jump with a placeholder target and returns
+	// where the target needs to be patched
+	private int emitJump(int op) {
+		emit(op, -1);
+		return count - 1;
+	}
+
+	private void patchJump(int operand) {
+		code[operand] = count;
+	}
+
+	private void getVariable(Token name, int kind, int slot) {
+		switch (kind) {
+			case Expr.LOCAL:
+				emit(GET_LOCAL, slot);
+				break;
+			case Expr.CELL:
+				emit(GET_CELL, slot);
+				break;
+			case Expr.CAPTURED:
+				emit(GET_CAPTURED, slot);
+				break;
+			default:
+				emit(GET_GLOBAL, slot, constant(name));
+		}
+	}
+
+	private void setVariable(Token name, int kind, int slot) {
+		switch (kind) {
+			case Expr.LOCAL:
+				emit(SET_LOCAL, slot);
+				break;
+			case Expr.CELL:
+				emit(SET_CELL, slot);
+				break;
+			case Expr.CAPTURED:
+				emit(SET_CAPTURED, slot);
+				break;
+			default:
+				emit(SET_GLOBAL, slot, constant(name));
+		}
+	}
+
+	private void defineVariable(Token name, int slot, boolean cell) {
+		if (slot == -1)
+			emit(DEFINE_GLOBAL, constant(name));
+		else
+			emit(cell ? DEFINE_CELL : DEFINE_LOCAL, slot);
+	}
+
+	// sets a declaration defineVariable gave a placeholder, keeping the
+	// cell closures made in between captured
+	private void redefineVariable(Token name, int slot, boolean cell) {
+		if (cell) {
+			emit(SET_CELL, slot);
+			emit(POP);
+		} else {
+			defineVariable(name, slot, false);
+		}
+	}
+
+	@Override
+	public Void visitBlockStmt(Stmt.Block stmt) {
+		// a block's locals live in the frame of the function around it
+		if (isDoWhile(stmt)) {
+			compileDoWhile((Stmt.While) stmt.statements.get(1));
+		} else {
+			for (Stmt statement : stmt.statements) {
+				compile(statement);
+			}
+		}
+		return null;
+	}
+
+	// the parser desugars do-while into a block running the body once
+	// followed by a while loop sharing the same body
+	static boolean isDoWhile(Stmt.Block stmt) {
+		return stmt.statements.size() == 2 && stmt.statements.get(1) instanceof Stmt.While
+				&& ((Stmt.While) stmt.statements.get(1)).body == stmt.statements.get(0);
+	}
+
+	// compiles the body once with the condition after it, so continue
+	// and break in the first pass behave as they do in later ones
+	private void compileDoWhile(Stmt.While stmt) {
+		Loop loop = new Loop(-1);
+		loops.push(loop);
+
+		int start = count;
+		compile(stmt.body);
+		for (int jump : loop.continues) {
+			patchJump(jump);
+		}
+		compile(stmt.condition);
+		int exitJump = emitJump(JUMP_IF_FALSE);
+		emit(JUMP, start);
+
+		patchJump(exitJump);
+		for (int jump : loop.breaks) {
+			patchJump(jump);
+		}
+		loops.pop();
+	}
+
+	@Override
+	public Void visitBreakStmt(Stmt.Break stmt) {
+		Loop loop = loops.peek();
+		loop.breaks.add(emitJump(JUMP));
+		return null;
+	}
+
+	@Override
+	public Void visitContinueStmt(Stmt.Continue stmt) {
+		Loop loop = loops.peek();
+		if (loop.start == -1)
+			loop.continues.add(emitJump(JUMP));
+		else
+			emit(JUMP, loop.start);
+		return null;
+	}
+
+	@Override
+	public Void visitClassStmt(Stmt.Class stmt) {
+		// the class name is defined before the class exists so
+		// methods can refer to it
+		emit(NULL);
+		defineVariable(stmt.name, stmt.slot, stmt.cell);
+
+		if (stmt.superclass != null) {
+			compile(stmt.superclass);
+			emit(SUPERCLASS, constant(stmt.name), stmt.superSlot);
+		}
+
+		// compiles each method into its own chunk, the vm creates the
+		// functions when the class is built
+		Chunk[] methods = new Chunk[stmt.methods.size()];
+		for (int i = 0; i < methods.length; i++) {
+			Stmt.Function method = stmt.methods.get(i);
+			methods[i] = compileFunction(method.name.lexeme, method.function);
+		}
+		Chunk[] classMethods = new Chunk[stmt.classMethods.size()];
+		for (int i = 0; i < classMethods.length; i++) {
+			Stmt.Function method = stmt.classMethods.get(i);
+			classMethods[i] = compileFunction(method.name.lexeme, method.function);
+		}
+
+		emit(CLASS, constant(new ClassTemplate(stmt, methods, classMethods)));
+		redefineVariable(stmt.name, stmt.slot, stmt.cell);
+		return null;
+	}
+
+	@Override
+	public Void visitExpressionStmt(Stmt.Expression stmt) {
+		compile(stmt.expression);
+		emit(POP);
+		return null;
+	}
+
+	@Override
+	public Void visitFunctionStmt(Stmt.Function stmt) {
+		// a captured function's cell exists before it is made, so that
+		// it can capture itself
+		if (stmt.cell) {
+			emit(NULL);
+			defineVariable(stmt.name, stmt.slot, true);
+		}
+		emit(CLOSURE, constant(compileFunction(stmt.name.lexeme, stmt.function)));
+		redefineVariable(stmt.name, stmt.slot, stmt.cell);
+		return null;
+	}
+
+	@Override
+	public Void visitIfStmt(Stmt.If stmt) {
+		compile(stmt.condition);
+		int elseJump = emitJump(JUMP_IF_FALSE);
+		compile(stmt.thenBranch);
+
+		if (stmt.elseBranch == null) {
+			patchJump(elseJump);
+			return null;
+		}
+
+		int endJump = emitJump(JUMP);
+		patchJump(elseJump);
+		compile(stmt.elseBranch);
+		patchJump(endJump);
+		return null;
+	}
+
+	@Override
+	public Void visitReturnStmt(Stmt.Return stmt) {
+		if (stmt.value != null)
+			compile(stmt.value);
+		else
+			emit(NULL);
+		emit(RETURN);
+		return null;
+	}
+
+	@Override
+	public Void visitVarStmt(Stmt.Var stmt) {
+		if (stmt.initializer != null)
+			compile(stmt.initializer);
+		else
+			emit(NULL);
+		defineVariable(stmt.name, stmt.slot, stmt.cell);
+		return null;
+	}
+
+	@Override
+	public Void visitForStmt(Stmt.For stmt) {
+		if (stmt.initializer != null)
+			compile(stmt.initializer);
+
+		// continue jumps forward to the increment
+		Loop loop = new Loop(-1);
+		loops.push(loop);
+
+		int start = count;
+		int exitJump = -1;
+		if (stmt.condition != null) {
+			compile(stmt.condition);
+			exitJump = emitJump(JUMP_IF_FALSE);
+		}
+		compile(stmt.body);
+		for (int jump : loop.continues) {
+			patchJump(jump);
+		}
+		if (stmt.increment != null) {
+			compile(stmt.increment);
+			emit(POP);
+		}
+		emit(JUMP, start);
+
+		if (exitJump != -1)
+			patchJump(exitJump);
+		for (int jump : loop.breaks) {
+			patchJump(jump);
+		}
+		loops.pop();
+		return null;
+	}
+
+	@Override
+	public Void visitWhileStmt(Stmt.While stmt) {
+		Loop loop = new Loop(count);
+		loops.push(loop);
+
+		compile(stmt.condition);
+		int exitJump = emitJump(JUMP_IF_FALSE);
+		compile(stmt.body);
+		emit(JUMP, loop.start);
+
+		patchJump(exitJump);
+		for (int jump : loop.breaks) {
+			patchJump(jump);
+		}
+		loops.pop();
+		return null;
+	}
+
+	@Override
+	public Void visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+		for (Expr value : expr.values) {
+			compile(value);
+		}
+		emit(ARRAY, expr.values.size());
+		return null;
+	}
+
+	@Override
+	public Void visitBinaryExpr(Expr.Binary expr) {
+		compile(expr.left);
+		compile(expr.right);
+
+		int operator = constant(expr.operator);
+		switch (expr.operator.type) {
+			case GREATER:
+				emit(OpCode.GREATER, operator);
+				break;
+			case GREATER_EQUAL:
+				emit(OpCode.GREATER_EQUAL, operator);
+				break;
+			case LESS:
+				emit(OpCode.LESS, operator);
+				break;
+			case LESS_EQUAL:
+				emit(OpCode.LESS_EQUAL, operator);
+				break;
+			case BANG_EQUAL:
+				emit(NOT_EQUAL);
+				break;
+			case EQUAL_EQUAL:
+				emit(EQUAL);
+				break;
+			case MINUS:
+				emit(SUBTRACT, operator);
+				break;
+			case PLUS:
+				emit(ADD, operator);
+				break;
+			case SLASH:
+				emit(DIVIDE, operator);
+				break;
+			case STAR:
+				emit(MULTIPLY, operator);
+				break;
+			case MODULOS:
+				emit(OpCode.MODULOS, operator);
+				break;
+			case STAR_STAR:
+				emit(POWER, operator);
+				break;
+			default:
+				// other operators such as ',' evaluate both sides to null
+				emit(POP);
+				emit(POP);
+				emit(NULL);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitCallExpr(Expr.Call expr) {
+		compile(expr.callee);
+		for (Expr argument : expr.arguments) {
+			compile(argument);
+		}
+		emit(expr.tail ? TAIL_CALL : CALL, expr.arguments.size(), constant(expr.paren));
+		return null;
+	}
+
+	@Override
+	public Void visitGetExpr(Expr.Get expr) {
+		compile(expr.object);
+		if (expr.index != null) {
+			compile(expr.index);
+			emit(GET_INDEX, constant(expr.name));
+		} else {
+			emit(GET_PROPERTY, constant(expr.name));
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitGroupingExpr(Expr.Grouping expr) {
+		compile(expr.expression);
+		return null;
+	}
+
+	@Override
+	public Void visitLiteralExpr(Expr.Literal expr) {
+		if (expr.value == null)
+			emit(NULL);
+		else if (expr.value == Boolean.TRUE)
+			emit(TRUE);
+		else if (expr.value == Boolean.FALSE)
+			emit(FALSE);
+		else
+			emit(CONSTANT, constant(expr.value));
+		return null;
+	}
+
+	@Override
+	public Void visitLogicalExpr(Expr.Logical expr) {
+		compile(expr.left);
+		// short circuits by keeping the left value and skipping the right
+		int endJump = emitJump(expr.operator.type == TokenType.OR ? JUMP_IF_TRUE_OR_POP : JUMP_IF_FALSE_OR_POP);
+		compile(expr.right);
+		patchJump(endJump);
+		return null;
+	}
+
+	@Override
+	public Void visitSetExpr(Expr.Set expr) {
+		// evaluates in the same order as the interpreter - object, value, index
+		compile(expr.object);
+		compile(expr.value);
+		boolean compound = expr.equals.type != TokenType.EQUAL;
+		if (expr.index != null) {
+			compile(expr.index);
+			if (compound)
+				emit(COMPOUND_INDEX, constant(expr.equals), constant(expr.name));
+			else
+				emit(SET_INDEX, constant(expr.name));
+		} else if (compound) {
+			emit(COMPOUND_PROPERTY, constant(expr.equals), constant(expr.name));
+		} else {
+			emit(SET_PROPERTY, constant(expr.name));
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitSuperExpr(Expr.Super expr) {
+		compile(expr.self);
+		getVariable(expr.keyword, expr.kind, expr.slot);
+		emit(GET_SUPER, constant(expr.method));
+		return null;
+	}
+
+	@Override
+	public Void visitTernaryExpr(Expr.Ternary expr) {
+		compile(expr.expr);
+		int elseJump = emitJump(JUMP_IF_FALSE);
+		compile(expr.thenBranch);
+		int endJump = emitJump(JUMP);
+		// only one branch leaves its value on the stack
+		adjust(-1);
+		patchJump(elseJump);
+		compile(expr.elseBranch);
+		patchJump(endJump);
+		return null;
+	}
+
+	@Override
+	public Void visitThisExpr(Expr.This expr) {
+		getVariable(expr.keyword, expr.kind, expr.slot);
+		return null;
+	}
+
+	@Override
+	public Void visitUnaryExpr(Expr.Unary expr) {
+		TokenType operator = expr.operator.type;
+		if ((operator == TokenType.PLUS_PLUS || operator == TokenType.MINUS_MINUS) && expr.right instanceof Expr.Get) {
+			// the element or field is updated in place
+			Expr.Get target = (Expr.Get) expr.right;
+			int delta = operator == TokenType.PLUS_PLUS ? 1 : -1;
+			compile(target.object);
+			if (target.index != null) {
+				compile(target.index);
+				emit(INCREMENT_INDEX, constant(expr.operator), delta, expr.postfix ? 1 : 0, constant(target.name));
+			} else {
+				emit(INCREMENT_PROPERTY, constant(expr.operator), delta, expr.postfix ? 1 : 0, constant(target.name));
+			}
+			return null;
+		}
+
+		compile(expr.right);
+		switch (expr.operator.type) {
+			case BANG:
+				emit(NOT);
+				break;
+			case MINUS:
+				emit(NEGATE, constant(expr.operator));
+				break;
+			case PLUS_PLUS:
+			case MINUS_MINUS: {
+				if (!(expr.right instanceof Expr.Variable)) {
+					emit(ERROR, constant(expr.operator),
+							constant("Operand of an increment operator must be a variable."));
+					break;
+				}
+				// leaves the result of the expression under the
+				// new value, which is stored then popped
+				Expr.Variable variable = (Expr.Variable) expr.right;
+				int delta = expr.operator.type == TokenType.PLUS_PLUS ? 1 : -1;
+				emit(INCREMENT, constant(expr.operator), delta, expr.postfix ? 1 : 0);
+				setVariable(variable.name, variable.kind, variable.slot);
+				emit(POP);
+				break;
+			}
+			default:
+				emit(POP);
+				emit(NULL);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitVariableExpr(Expr.Variable expr) {
+		getVariable(expr.name, expr.kind, expr.slot);
+		return null;
+	}
+
+	@Override
+	public Void visitAssignExpr(Expr.Assign expr) {
+		compile(expr.value);
+		if (expr.equals.type != TokenType.EQUAL) {
+			// the value is evaluated before the variable is read
+			getVariable(expr.name, expr.kind, expr.slot);
+			emit(COMPOUND, constant(expr.equals));
+		}
+		setVariable(expr.name, expr.kind, expr.slot);
+		return null;
+	}
+
+	@Override
+	public Void visitFunctionExpr(Expr.Function expr) {
+		emit(CLOSURE, constant(compileFunction("", expr)));
+		return null;
+	}
+
+	@Override
+	public Void visitInlineExpr(Expr.Inline expr) {
+		for (int i = 0; i < expr.slots.length; i++) {
+			compile(expr.arguments.get(i));
+			emit(SET_LOCAL, expr.slots[i]);
+			emit(POP);
+		}
+		compile(expr.body);
+		return null;
+	}
+
+	@Override
+	public Void visitIntrinsicExpr(Expr.Intrinsic expr) {
+		for (Expr argument : expr.arguments)
+			compile(argument);
+		emit(INTRINSIC, expr.function, expr.arguments.size(), constant(expr.name));
+		return null;
+	}
+
+	// the vm runs unfused trees, fused nodes compile as the nodes
+	// they replaced
+	@Override
+	public Void visitMethodCallStmt(Stmt.MethodCall stmt) {
+		compile(stmt.call);
+		emit(POP);
+		return null;
+	}
+
+	@Override
+	public Void visitIncrementLocalExpr(Expr.IncrementLocal expr) {
+		compile(expr.original);
+		return null;
+	}
+
+	@Override
+	public Void visitCompoundLocalExpr(Expr.CompoundLocal expr) {
+		compile(expr.original);
+		return null;
+	}
+
+	@Override
+	public Void visitIndexLocalExpr(Expr.IndexLocal expr) {
+		compile(expr.original);
+		return null;
+	}
+
+	@Override
+	public Void visitCompareLocalExpr(Expr.CompareLocal expr) {
+		compile(expr.original);
+		return null;
+	}
+
+	// everything the vm needs to build a class at runtime
+	static class ClassTemplate {
+		final Stmt.Class stmt;
+		final Chunk[] methods;
+		final Chunk[] classMethods;
+
+		ClassTemplate(Stmt.Class stmt, Chunk[] methods, Chunk[] classMethods) {
+			this.stmt = stmt;
+			this.methods = methods;
+			this.classMethods = classMethods;
+		}
+	}
+}
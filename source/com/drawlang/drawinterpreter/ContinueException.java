@@ -1,8 +0,0 @@
-package com.drawlang.drawinterpreter;
-
-class ContinueException extends RuntimeException {
-	ContinueException() {
-		super("continue exception");
-	}
-}
-
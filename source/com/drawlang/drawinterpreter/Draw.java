@@ -1,6 +1,10 @@
 package com.drawlang.drawinterpreter;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import javafx.application.*;
 
 import com.drawlang.gui.*;
 
@@ -9,7 +13,44 @@ public class Draw {
 	static boolean hadError = false;
 	static boolean hadRuntimeError = false;
 
+	// selects the execution engine, running with -Ddraw.engine=vm uses the
+	// bytecode vm instead of the tree walking interpreter
+	static final boolean useVM = "vm".equals(System.getProperty("draw.engine"));
+	// lets the tree walker's nodes specialize on the types they see,
+	// turned off with -Ddraw.specialize=false
+	static final boolean specialize = !"false".equals(System.getProperty("draw.specialize"));
+	// fuses common shapes of the tree into nodes the tree walker runs in
+	// one visit, turned off with -Ddraw.fuse=false
+	static final boolean fuse = !"false".equals(System.getProperty("draw.fuse"));
+	// inlines small functions into their callers, turned off with
+	// -Ddraw.inline=false
+	static final boolean inline = !"false".equals(System.getProperty("draw.inline"));
+	// runs calls to Math functions and core built-ins such as str and
+	// Color as intrinsics, turned off with -Ddraw.intrinsics=false
+	static final boolean intrinsics = !"false".equals(System.getProperty("draw.intrinsics"));
+	// proves which locals and operators only see numbers so the tree
+	// walker can skip their type checks, turned off with -Ddraw.infer=false
+	static final boolean infer = !"false".equals(System.getProperty("draw.infer"));
+	// prints the changes the passes after the resolver make to the
+	// console before running, set with -Ddraw.trace=true
+	static final boolean trace = Boolean.getBoolean("draw.trace");
+	// prints the compiled bytecode to the console before running
+	static final boolean disassemble = Boolean.getBoolean("draw.disassemble");
+	// megabytes of stack scripts run with, which limits how deep non tail
+	// recursion can go, set with -Ddraw.stackSize
+	static final long stackSize = Long.getLong("draw.stackSize", 256);
+
+	// whether a script is running, drawing again before it finishes is
+	// ignored
+	private static boolean running = false;
+
+	// console output waiting to be appended on the fx thread, and
+	// whether a task to append it has been handed over yet
+	private static final StringBuilder output = new StringBuilder();
+	private static boolean printing = false;
+
 	public static void run(String source) {
+		if (running) return;
 		Main.getConsole().clear();
 		hadError = false;
 		hadRuntimeError = false;
@@ -18,16 +59,134 @@ public class Draw {
 		if (hadError) return;
 		Parser parser = new Parser(tokens);
 		List<Stmt> statements = parser.parse();
-		Interpreter interpreter = new Interpreter(new DrawCanvas(Main.getCanvas()));
+		DrawCanvas canvas = new DrawCanvas(Main.getCanvas());
+		Interpreter interpreter = new Interpreter(canvas);
 
 		if (hadError) return;
 
-		Resolver resolver = new Resolver(interpreter);
-		resolver.resolve(statements);
+		Resolver resolver = new Resolver(interpreter.globals);
+		int resolved = resolver.resolveScript(statements);
 
 		if (hadError) return;
 
-		interpreter.interpret(statements);
+		Folder.fold(statements);
+		int frameSize = inline ? Inliner.inline(statements, resolved) : resolved;
+		Eliminator.eliminate(statements);
+		if (intrinsics)
+			Intrinsics.replace(statements);
+		if (useVM) {
+			Chunk script = Compiler.compile(statements, frameSize);
+			if (disassemble)
+				println(script.disassemble());
+			execute(canvas, () -> new VM(interpreter).interpret(script));
+		} else {
+			if (infer)
+				Typer.infer(statements);
+			if (fuse)
+				Fuser.fuse(statements);
+			execute(canvas, () -> interpreter.interpret(statements, frameSize));
+		}
+	}
+
+	// runs the script on its own thread with a stack of stackSize and
+	// waits for it to finish, each draw call takes several java frames
+	// so the default stack only allows shallow recursion. The fx thread
+	// keeps handling events while it waits, so the script can hand it
+	// the work that has to run there, and draws what is left on the
+	// canvas once it finishes
+	private static void execute(DrawCanvas canvas, Runnable script) {
+		Object finished = new Object();
+		Thread thread = new Thread(null, () -> {
+			try {
+				script.run();
+			} catch (StackOverflowError error) {
+				runtimeError("Stack overflow, recursion is deeper than a "
+						+ stackSize + "MB stack allows.");
+			} catch (Throwable error) {
+				// a failure outside the script's own checks still ends
+				// the run with an error rather than killing the thread
+				runtimeError("Runtime error: " + error);
+			} finally {
+				canvas.flush();
+				Platform.runLater(() -> Platform.exitNestedEventLoop(finished, null));
+			}
+		}, "draw", stackSize * 1024 * 1024);
+		running = true;
+		thread.start();
+		Platform.enterNestedEventLoop(finished);
+		running = false;
+	}
+
+	// runs the task on the fx thread and waits for its result, snapshots
+	// and the console may only be used there but scripts run on their
+	// own thread
+	static <T> T onFxThread(Supplier<T> task) {
+		if (Platform.isFxApplicationThread())
+			return task.get();
+
+		Object[] result = new Object[1];
+		RuntimeException[] failure = new RuntimeException[1];
+		CountDownLatch done = new CountDownLatch(1);
+		Platform.runLater(() -> {
+			try {
+				result[0] = task.get();
+			} catch (RuntimeException e) {
+				failure[0] = e;
+			} finally {
+				done.countDown();
+			}
+		});
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure[0] != null)
+			throw failure[0];
+		@SuppressWarnings("unchecked")
+		T value = (T) result[0];
+		return value;
+	}
+
+	// runs the task on the fx thread without waiting for it, tasks run
+	// in the order they are handed over
+	static void onFxThreadLater(Runnable task) {
+		if (Platform.isFxApplicationThread())
+			task.run();
+		else
+			Platform.runLater(task);
+	}
+
+	// adds the text to the output waiting for the console. Printing
+	// doesn't wait for the fx thread, what a script prints while the
+	// console is being appended to goes in the next append
+	static void print(String text) {
+		synchronized (output) {
+			output.append(text);
+			if (printing)
+				return;
+			printing = true;
+		}
+		onFxThreadLater(Draw::appendOutput);
+	}
+
+	private static void appendOutput() {
+		String text;
+		synchronized (output) {
+			text = output.toString();
+			output.setLength(0);
+			printing = false;
+		}
+		Main.getConsole().print(text);
+	}
+
+	static void println(String text) {
+		print(text + "\n");
+	}
+
+	static void trace(String message) {
+		if (trace)
+			println(message);
 	}
 
 	static void error(int line, String message) {
@@ -35,7 +194,7 @@ public class Draw {
 	}
 
 	private static void report(int line, String where, String message) {
-		Main.getConsole().println("[line " + line + "] Error" + where + ": " + message);
+		println("[line " + line + "] Error" + where + ": " + message);
 		hadError = true;
 	}
 
@@ -48,7 +207,11 @@ public class Draw {
 	}
 
 	static void runtimeError(RuntimeError error) {
-		Main.getConsole().println(error.getMessage() + "\n[line " + error.token.line + "]");
+		runtimeError(error.getMessage() + "\n[line " + error.token.line + "]");
+	}
+
+	private static void runtimeError(String message) {
+		println(message);
 		hadRuntimeError = true;
 	}
 
@@ -5,6 +5,10 @@ import java.util.*;
 class DrawArray extends DrawInstance {
 	public final Object[] elements;
 
+	// built-in methods shared by every array
+	static final NativeTable<DrawArray> METHODS = new NativeTable<DrawArray>()
+			.add("map", 1, DrawArray::map);
+
 	DrawArray(int size) {
 		super(null);
 		elements = new Object[size];
@@ -23,34 +27,34 @@ class DrawArray extends DrawInstance {
 		return elements[index] = value;
 	}
 
+	@Override
+	NativeTable<?> nativeMethods() {
+		return METHODS;
+	}
+
 	@Override
 	Object get(Token name) {
-		if (name.lexeme.equals("length")) {
-			return (double)elements.length;
-		} else if (name.lexeme.equals("map")) {
-			return new DrawCallable() {
-				@Override
-				public int arity() {
-					return 1;
-				}
+		// methods read as values are bound to this array
+		int id = METHODS.idOf(name.symbol);
+		if (id >= 0)
+			return METHODS.bind(this, id, name);
 
-				@Override
-				public Object call(Interpreter interpreter, List<Object> arguments) {
-					DrawFunction function = (DrawFunction) arguments.get(0);
-					Object[] newList = new Object[elements.length];
-					for (int i = 0; i < elements.length; i++) {
-						List<Object> args = new ArrayList();
-						args.add(elements[i]);
-						newList[i] = function.call(interpreter, args);
-					}
-					return new DrawArray(newList);
-				}
-			};
+		if (name.symbol == Symbols.LENGTH) {
+			return (double)elements.length;
 		}
 
 		throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
 	}
 
+	private Object map(Interpreter interpreter, Token name, Object[] arguments) {
+		DrawFunction function = (DrawFunction) arguments[0];
+		Object[] newList = new Object[elements.length];
+		for (int i = 0; i < elements.length; i++) {
+			newList[i] = function.call1(interpreter, elements[i]);
+		}
+		return new DrawArray(newList);
+	}
+
 	@Override
 	void set(Token name, Object value) {
 		throw new RuntimeError(name, "Cannot add properties to arrays.");
@@ -1,11 +1,33 @@
 package com.drawlang.drawinterpreter;
 
-import java.util.*;
-
 // interface for creating classes and functions
 
 interface DrawCallable {
+	Object[] NO_ARGUMENTS = {};
+
 	int arity();
-	Object call(Interpreter interpreter, List<Object> arguments);
-}
+	Object call(Interpreter interpreter, Object[] arguments);
+
+	// entry points for calls with up to four arguments. Call sites check
+	// the arity before using them, callables override the ones they can
+	// run without packing the arguments into an array
+	default Object call0(Interpreter interpreter) {
+		return call(interpreter, NO_ARGUMENTS);
+	}
 
+	default Object call1(Interpreter interpreter, Object a) {
+		return call(interpreter, new Object[] {a});
+	}
+
+	default Object call2(Interpreter interpreter, Object a, Object b) {
+		return call(interpreter, new Object[] {a, b});
+	}
+
+	default Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+		return call(interpreter, new Object[] {a, b, c});
+	}
+
+	default Object call4(Interpreter interpreter, Object a, Object b, Object c, Object d) {
+		return call(interpreter, new Object[] {a, b, c, d});
+	}
+}
@@ -10,9 +10,51 @@ import java.util.*;
 
 class DrawCanvas extends DrawInstance {
 
+	// commands recorded in a batch before it is handed over, and pixels
+	// set in a row, which are kept in one int array rather than a
+	// command each
+	private static final int BATCH = 1024;
+	private static final int PIXELS = 4096;
+
 	private Canvas canvas;
 	private GraphicsContext context;
 	private PixelWriter pixelWriter;
+	// the canvas may be in the window, which is only drawn on the fx
+	// thread, so scripts record their drawing calls on their own thread
+	// and hand them over in batches
+	private List<Runnable> commands = new ArrayList<>();
+	private int[] pixels = new int[3 * PIXELS];
+	private int pixelCount = 0;
+
+	// built-in methods shared by every canvas
+	static final NativeTable<DrawCanvas> METHODS = new NativeTable<DrawCanvas>()
+			.add("clear", 0, DrawCanvas::clear)
+			.add("fillRect", 4, DrawCanvas::fillRect)
+			.add("fillCircle", 3, DrawCanvas::fillCircle)
+			.add("fillText", 3, DrawCanvas::fillText)
+			.add("fillPolygon", 2, DrawCanvas::fillPolygon)
+			.add("fillArc", 7, DrawCanvas::fillArc)
+			.add("drawRect", 4, DrawCanvas::drawRect)
+			.add("drawCircle", 3, DrawCanvas::drawCircle)
+			.add("drawPolygon", 2, DrawCanvas::drawPolygon)
+			.add("drawLine", 4, DrawCanvas::drawLine)
+			.add("drawPolyline", 2, DrawCanvas::drawPolyline)
+			.add("drawArc", 7, DrawCanvas::drawArc)
+			.add("drawImage", 3, DrawCanvas::drawImage)
+			.add("toImage", 0, DrawCanvas::toImage)
+			.add("setColor", 1, DrawCanvas::setColor)
+			.add("setLineWidth", 1, DrawCanvas::setLineWidth)
+			.add("setPixel", 3, DrawCanvas::setPixel)
+			.add("beginPath", 0, DrawCanvas::beginPath)
+			.add("closePath", 0, DrawCanvas::closePath)
+			.add("fillPath", 0, DrawCanvas::fillPath)
+			.add("drawPath", 0, DrawCanvas::drawPath)
+			.add("moveTo", 2, DrawCanvas::moveTo)
+			.add("lineTo", 2, DrawCanvas::lineTo)
+			.add("quadraticCurveTo", 4, DrawCanvas::quadraticCurveTo)
+			.add("bezierCurveTo", 6, DrawCanvas::bezierCurveTo)
+			.add("arcTo", 5, DrawCanvas::arcTo)
+			.add("arc", 6, DrawCanvas::arc);
 
 	DrawCanvas(Canvas canvas) {
 		super(null);
@@ -21,633 +63,461 @@ class DrawCanvas extends DrawInstance {
 		pixelWriter = context.getPixelWriter();
 	}
 
+	@Override
+	NativeTable<?> nativeMethods() {
+		return METHODS;
+	}
+
 	@Override
 	Object get(Token name) {
-		switch (name.lexeme) {
-			case "clear":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 0;
-					}
-	
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						clear();
-						return null;
-					}
-				};
-			case "fillRect":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 4;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						// throws error if arguments are not of type double
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double &&
-							arguments.get(3) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number, number).");
-						}
-
-						int x = (int)(double)arguments.get(0), y = (int)(double)arguments.get(1);
-						int w = (int)(double)arguments.get(2), h = (int)(double)arguments.get(3);
-						context.fillRect(x, y, w, h);
-						return null;
-					}
-				};
-			case "fillCircle":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 3;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number).");
-						}
-
-						int x = (int)(double) arguments.get(0), y = (int)(double)arguments.get(1);
-						int radius = (int)(double) arguments.get(2);
-						context.fillOval(x-radius/2, y-radius/2, radius, radius);
-						return null;
-					}
-
-				};
-			case "fillText":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 3;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof DrawString &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(String, number, number).");
-						}
-						String text = ((DrawString)arguments.get(0)).toString();
-						double x = (double) arguments.get(1), y = (double)arguments.get(2);
-						context.fillText(text, x, y);
-						return null;
-					}
-
-				};
-			case "fillPolygon": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 2;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof DrawArray &&
-							arguments.get(1) instanceof DrawArray)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number[], number[]).");
-						}
-						// takes in the custom draw array and converts it to a double array
-						// for the API to use
-						double[] xPoints = toDoubleArray(((DrawArray) arguments.get(0)).elements);
-						double[] yPoints = toDoubleArray(((DrawArray) arguments.get(1)).elements);
-						// sets the size to the smallest of the two arrays incase the user sent
-						// arrays of different lengths
-						int size = xPoints.length < yPoints.length ? xPoints.length : yPoints.length;						
-						context.fillPolygon(xPoints, yPoints, size);
-						return null;
-					}
-				};
-			// fills an arc without using path, last parameter must be either "ROUND", "CHORD", or "OPEN"
-			case "fillArc": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 7;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double &&
-							arguments.get(3) instanceof Double &&
-							arguments.get(4) instanceof Double &&
-							arguments.get(5) instanceof Double &&
-							arguments.get(6) instanceof DrawString)
-							) {
-							throw new RuntimeError(
-								name, "Expected " + name.lexeme + 
-								"(number, number, number, number, number, number, String).");
-						}
-						int x = (int)(double)arguments.get(0), y = (int)(double)arguments.get(1);
-						int w = (int)(double)arguments.get(2), h = (int)(double)arguments.get(3);
-						double startAngle = (double)arguments.get(4), arcExtent = (double)arguments.get(5);
-						String arcType = (String) arguments.get(6).toString();
-						ArcType closure = ArcType.valueOf(arcType);
-						context.fillArc(x, y, w, h, startAngle, arcExtent, closure);
-						return null;
-					}
-				};
-			case "drawRect":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 4;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double &&
-							arguments.get(3) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(numner, numner, number, number).");
-						}
-
-						int x = (int)(double)arguments.get(0), y = (int)(double)arguments.get(1);
-						int w = (int)(double)arguments.get(2), h = (int)(double)arguments.get(3);
-						context.strokeRect(x, y, w, h);
-						return null;
-					}
-				};
-			case "drawCircle":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 3;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number).");
-						}
-
-						int x = (int)(double) arguments.get(0), y = (int)(double)arguments.get(1);
-						int radius = (int)(double) arguments.get(2);
-						context.strokeOval(x-radius/2, y-radius/2, radius, radius);
-						return null;
-					}
-
-				};
-			case "drawPolygon": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 2;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof DrawArray &&
-							arguments.get(1) instanceof DrawArray)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number[], number[]).");
-						}
-
-						double[] xPoints = toDoubleArray(((DrawArray) arguments.get(0)).elements);
-						double[] yPoints = toDoubleArray(((DrawArray) arguments.get(1)).elements);
-						int size = xPoints.length < yPoints.length ? xPoints.length : yPoints.length;
-						// same as fill polygon but uses stroke instead to draw outline				
-						context.strokePolygon(xPoints, yPoints, size);
-						return null;
-					}
-				};
-			case "drawLine": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 4;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double &&
-							arguments.get(3) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number, number).");
-						}
-
-						int x = (int)(double)arguments.get(0), y = (int)(double)arguments.get(1);
-						int endX = (int)(double)arguments.get(2), endY = (int)(double)arguments.get(3);
-						// gets start and end coordinates and uses them to draw a line			
-						context.strokeLine(x, y, endX, endY);
-						return null;
-					}
-				};
-			case "drawPolyline": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 2;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof DrawArray &&
-							arguments.get(1) instanceof DrawArray)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number[], number[]).");
-						}
-
-						double[] xPoints = toDoubleArray(((DrawArray) arguments.get(0)).elements);
-						double[] yPoints = toDoubleArray(((DrawArray) arguments.get(1)).elements);
-						int size = xPoints.length < yPoints.length ? xPoints.length : yPoints.length;
-						// same as draw polygon but does not explicitly connect shape				
-						context.strokePolyline(xPoints, yPoints, size);
-						return null;
-					}
-				};
-			// same as fill arc but draws outline instead
-			case "drawArc": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 7;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double &&
-							arguments.get(3) instanceof Double &&
-							arguments.get(4) instanceof Double &&
-							arguments.get(5) instanceof Double &&
-							arguments.get(6) instanceof DrawString)
-							) {
-							throw new RuntimeError(
-								name, "Expected " + name.lexeme + 
-								"(number, number, number, number, number, number, String).");
-
-						}
-
-						int x = (int)(double)arguments.get(0), y = (int)(double)arguments.get(1);
-						int w = (int)(double)arguments.get(2), h = (int)(double)arguments.get(3);
-						double startAngle = (double)arguments.get(4), arcExtent = (double)arguments.get(5);
-						String arcType = (String) arguments.get(6).toString();
-						ArcType closure = ArcType.valueOf(arcType);
-						context.strokeArc(x, y, w, h, startAngle, arcExtent, closure);
-						return null;
-					}
-				};
-			case "drawImage":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 3;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof DrawImage &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(Image, number, number).");
-						}
-						int x = (int)(double) arguments.get(1), y = (int)(double)arguments.get(2);
-						Image image = ((DrawImage) arguments.get(0)).image;
-						context.drawImage(image, x, y);
-						return null;
-					}
-				};
-			case "toImage":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 0;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						SnapshotParameters sp = new SnapshotParameters();
-						sp.setFill(Color.TRANSPARENT);
-						WritableImage result = new WritableImage((int) canvas.getWidth(), (int) canvas.getHeight());
-						canvas.snapshot(sp, result);
-						return new DrawImage(result);
-					}
-				};
-			case "setColor":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						// throws error if argument is not of type DrawColor
-						if (!(arguments.get(0) instanceof DrawColor))
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(Color).");
-
-						Color color = ((DrawColor)arguments.get(0)).color;
-						context.setFill(color);
-						context.setStroke(color);
-						return null;
-					}
-				};
-			case "setLineWidth":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						context.setLineWidth((double)arguments.get(0));
-						return null;
-					}
-				};
-			case "setPixel":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 3;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof DrawColor)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, Color).");
-						}
-
-						int x = (int)(double) arguments.get(0), y = (int)(double)arguments.get(1);
-						Color color = ((DrawColor) arguments.get(2)).color;
-						pixelWriter.setColor(x, y, color);
-						return null;
-					}
-				};
-
-			// resets current path to empty
-			case "beginPath":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 0;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						context.beginPath();
-						return null;
-					}
-				};
-
-			// closes current path
-			case "closePath":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 0;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						context.closePath();
-						return null;
-					}
-				};
-
-			// fills current path with current colour
-			case "fillPath":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 0;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						context.fill();
-						return null;
-					}
-				};
-
-			// draws outline of current path with current colour
-			case "drawPath":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 0;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						context.stroke();
-						return null;
-					}
-				};
-
-			// moves path to given coordinates
-			case "moveTo":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 2;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
-						}
-						double x = (double) arguments.get(0), y = (double)arguments.get(1);
-						context.moveTo(x, y);
-						return null;
-					}
-				};
-
-			// draws line from path position to given coordinates
-			case "lineTo":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 2;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
-						}
-
-						double x = (double) arguments.get(0), y = (double)arguments.get(1);
-						context.lineTo(x, y);
-						return null;
-					}
-				};
-
-			// draws curve from path position to given coordinates
-			// this approaches but does not touch a control coordinate
-			case "quadraticCurveTo":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 4;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double &&
-							arguments.get(3) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number, number).");
-						}
-
-						double xControl = (double) arguments.get(0), yControl = (double)arguments.get(1);
-						double xEnd = (double) arguments.get(2), yEnd = (double)arguments.get(3);
-						context.quadraticCurveTo(xControl, yControl, xEnd, yEnd);
-						return null;
-					}
-				};
-
-			// similar to quadratic curve but requires two control points
-			// which allows more flexibility
-			case "bezierCurveTo":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 6;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double &&
-							arguments.get(3) instanceof Double &&
-							arguments.get(4) instanceof Double &&
-							arguments.get(5) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + 
-								"(number, number, number number, number, number).");
-						}
-						double xControl = (double) arguments.get(0), yControl = (double)arguments.get(1);
-						double xControl2 = (double) arguments.get(2), yControl2 = (double)arguments.get(3);
-						double xEnd = (double) arguments.get(4), yEnd = (double)arguments.get(5);
-						context.bezierCurveTo(xControl, yControl, xControl2, yControl2, xEnd, yEnd);
-						return null;
-					}
-				};
-			// adds arc to path
-			case "arcTo":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 5;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double &&
-							arguments.get(3) instanceof Double &&
-							arguments.get(4) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + 
-								"(number, number, number, number, number).");
-						}
-
-						double x1 = (double) arguments.get(0), y1 = (double)arguments.get(1);
-						double x2 = (double) arguments.get(2), y2 = (double)arguments.get(3);
-						double radius = (double) arguments.get(4);
-						context.arcTo(x1, y1, x2, y2, radius);
-						return null;
-					}
-				};
-			// adds arc to path, allows user to specify angles
-			case "arc":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 6;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double &&
-							arguments.get(3) instanceof Double &&
-							arguments.get(4) instanceof Double &&
-							arguments.get(5) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + 
-								"(number, number, number, number, number, number).");
-						}
-						double centerX = (double) arguments.get(0), centerY = (double)arguments.get(1);
-						double radiusX = (double) arguments.get(2), radiusY = (double)arguments.get(3);
-						double startAngle = (double) arguments.get(4), length = (double)arguments.get(5);
-						context.arc(centerX, centerY, radiusX, radiusY, startAngle, length);
-						return null;
-					}
-				};
-
-			case "width":
-				return canvas.getWidth();
-			case "height":
-				return canvas.getHeight();
-			default:
-				throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+		// methods read as values are bound to this canvas
+		int id = METHODS.idOf(name.symbol);
+		if (id >= 0)
+			return METHODS.bind(this, id, name);
+
+		if (name.symbol == Symbols.WIDTH)
+			return canvas.getWidth();
+		if (name.symbol == Symbols.HEIGHT)
+			return canvas.getHeight();
+		throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+	}
+
+	private Object clear(Interpreter interpreter, Token name, Object[] arguments) {
+		clear();
+		return null;
+	}
+
+	private Object fillRect(Interpreter interpreter, Token name, Object[] arguments) {
+		// throws error if arguments are not of type double
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double &&
+			arguments[3] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number, number).");
+		}
+
+		int x = (int)(double)arguments[0], y = (int)(double)arguments[1];
+		int w = (int)(double)arguments[2], h = (int)(double)arguments[3];
+		draw(() -> context.fillRect(x, y, w, h));
+		return null;
+	}
+
+	private Object fillCircle(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number).");
+		}
+
+		int x = (int)(double) arguments[0], y = (int)(double)arguments[1];
+		int radius = (int)(double) arguments[2];
+		draw(() -> context.fillOval(x-radius/2, y-radius/2, radius, radius));
+		return null;
+	}
+
+	private Object fillText(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof DrawString &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(String, number, number).");
+		}
+		String text = ((DrawString)arguments[0]).toString();
+		double x = (double) arguments[1], y = (double)arguments[2];
+		draw(() -> context.fillText(text, x, y));
+		return null;
+	}
+
+	private Object fillPolygon(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof DrawArray &&
+			arguments[1] instanceof DrawArray)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number[], number[]).");
+		}
+		// takes in the custom draw array and converts it to a double array
+		// for the API to use
+		double[] xPoints = toDoubleArray(((DrawArray) arguments[0]).elements);
+		double[] yPoints = toDoubleArray(((DrawArray) arguments[1]).elements);
+		// sets the size to the smallest of the two arrays incase the user sent
+		// arrays of different lengths
+		int size = xPoints.length < yPoints.length ? xPoints.length : yPoints.length;						
+		draw(() -> context.fillPolygon(xPoints, yPoints, size));
+		return null;
+	}
+
+	// fills an arc without using path, last parameter must be either "ROUND", "CHORD", or "OPEN"
+	private Object fillArc(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double &&
+			arguments[3] instanceof Double &&
+			arguments[4] instanceof Double &&
+			arguments[5] instanceof Double &&
+			arguments[6] instanceof DrawString)
+			) {
+			throw new RuntimeError(
+				name, "Expected " + name.lexeme + 
+				"(number, number, number, number, number, number, String).");
+		}
+		int x = (int)(double)arguments[0], y = (int)(double)arguments[1];
+		int w = (int)(double)arguments[2], h = (int)(double)arguments[3];
+		double startAngle = (double)arguments[4], arcExtent = (double)arguments[5];
+		String arcType = (String) arguments[6].toString();
+		ArcType closure = ArcType.valueOf(arcType);
+		draw(() -> context.fillArc(x, y, w, h, startAngle, arcExtent, closure));
+		return null;
+	}
+
+	private Object drawRect(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double &&
+			arguments[3] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(numner, numner, number, number).");
+		}
+
+		int x = (int)(double)arguments[0], y = (int)(double)arguments[1];
+		int w = (int)(double)arguments[2], h = (int)(double)arguments[3];
+		draw(() -> context.strokeRect(x, y, w, h));
+		return null;
+	}
+
+	private Object drawCircle(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number).");
+		}
+
+		int x = (int)(double) arguments[0], y = (int)(double)arguments[1];
+		int radius = (int)(double) arguments[2];
+		draw(() -> context.strokeOval(x-radius/2, y-radius/2, radius, radius));
+		return null;
+	}
+
+	private Object drawPolygon(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof DrawArray &&
+			arguments[1] instanceof DrawArray)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number[], number[]).");
+		}
+
+		double[] xPoints = toDoubleArray(((DrawArray) arguments[0]).elements);
+		double[] yPoints = toDoubleArray(((DrawArray) arguments[1]).elements);
+		int size = xPoints.length < yPoints.length ? xPoints.length : yPoints.length;
+		// same as fill polygon but uses stroke instead to draw outline				
+		draw(() -> context.strokePolygon(xPoints, yPoints, size));
+		return null;
+	}
+
+	private Object drawLine(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double &&
+			arguments[3] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number, number).");
+		}
+
+		int x = (int)(double)arguments[0], y = (int)(double)arguments[1];
+		int endX = (int)(double)arguments[2], endY = (int)(double)arguments[3];
+		// gets start and end coordinates and uses them to draw a line			
+		draw(() -> context.strokeLine(x, y, endX, endY));
+		return null;
+	}
+
+	private Object drawPolyline(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof DrawArray &&
+			arguments[1] instanceof DrawArray)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number[], number[]).");
+		}
+
+		double[] xPoints = toDoubleArray(((DrawArray) arguments[0]).elements);
+		double[] yPoints = toDoubleArray(((DrawArray) arguments[1]).elements);
+		int size = xPoints.length < yPoints.length ? xPoints.length : yPoints.length;
+		// same as draw polygon but does not explicitly connect shape				
+		draw(() -> context.strokePolyline(xPoints, yPoints, size));
+		return null;
+	}
+
+	// same as fill arc but draws outline instead
+	private Object drawArc(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double &&
+			arguments[3] instanceof Double &&
+			arguments[4] instanceof Double &&
+			arguments[5] instanceof Double &&
+			arguments[6] instanceof DrawString)
+			) {
+			throw new RuntimeError(
+				name, "Expected " + name.lexeme + 
+				"(number, number, number, number, number, number, String).");
+
+		}
+
+		int x = (int)(double)arguments[0], y = (int)(double)arguments[1];
+		int w = (int)(double)arguments[2], h = (int)(double)arguments[3];
+		double startAngle = (double)arguments[4], arcExtent = (double)arguments[5];
+		String arcType = (String) arguments[6].toString();
+		ArcType closure = ArcType.valueOf(arcType);
+		draw(() -> context.strokeArc(x, y, w, h, startAngle, arcExtent, closure));
+		return null;
+	}
+
+	private Object drawImage(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof DrawImage &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(Image, number, number).");
+		}
+		int x = (int)(double) arguments[1], y = (int)(double)arguments[2];
+		Image image = ((DrawImage) arguments[0]).toDraw();
+		draw(() -> context.drawImage(image, x, y));
+		return null;
+	}
+
+	private Object toImage(Interpreter interpreter, Token name, Object[] arguments) {
+		SnapshotParameters sp = new SnapshotParameters();
+		sp.setFill(Color.TRANSPARENT);
+		WritableImage result = new WritableImage((int) canvas.getWidth(), (int) canvas.getHeight());
+		// snapshots can only be taken on the fx thread, after what has
+		// been drawn so far
+		flush();
+		Draw.onFxThread(() -> canvas.snapshot(sp, result));
+		return new DrawImage(result);
+	}
+
+	private Object setColor(Interpreter interpreter, Token name, Object[] arguments) {
+		// throws error if argument is not of type DrawColor
+		if (!(arguments[0] instanceof DrawColor))
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(Color).");
+
+		Color color = ((DrawColor)arguments[0]).color;
+		draw(() -> {
+			context.setFill(color);
+			context.setStroke(color);
+		});
+		return null;
+	}
+
+	private Object setLineWidth(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		draw(() -> context.setLineWidth((double)arguments[0]));
+		return null;
+	}
+
+	private Object setPixel(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof DrawColor)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, Color).");
+		}
+
+		int x = (int)(double) arguments[0], y = (int)(double)arguments[1];
+		Color color = ((DrawColor) arguments[2]).color;
+		if (pixelCount == PIXELS)
+			flush();
+		// kept as x, y and the colour packed into an int
+		int i = 3 * pixelCount++;
+		pixels[i] = x;
+		pixels[i + 1] = y;
+		pixels[i + 2] = (int) Math.round(color.getOpacity() * 255) << 24
+				| (int) Math.round(color.getRed() * 255) << 16
+				| (int) Math.round(color.getGreen() * 255) << 8
+				| (int) Math.round(color.getBlue() * 255);
+		return null;
+	}
+
+	// resets current path to empty
+	private Object beginPath(Interpreter interpreter, Token name, Object[] arguments) {
+		draw(() -> context.beginPath());
+		return null;
+	}
+
+	// closes current path
+	private Object closePath(Interpreter interpreter, Token name, Object[] arguments) {
+		draw(() -> context.closePath());
+		return null;
+	}
+
+	// fills current path with current colour
+	private Object fillPath(Interpreter interpreter, Token name, Object[] arguments) {
+		draw(() -> context.fill());
+		return null;
+	}
+
+	// draws outline of current path with current colour
+	private Object drawPath(Interpreter interpreter, Token name, Object[] arguments) {
+		draw(() -> context.stroke());
+		return null;
+	}
+
+	// moves path to given coordinates
+	private Object moveTo(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
 		}
+		double x = (double) arguments[0], y = (double)arguments[1];
+		draw(() -> context.moveTo(x, y));
+		return null;
+	}
+
+	// draws line from path position to given coordinates
+	private Object lineTo(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
+		}
+
+		double x = (double) arguments[0], y = (double)arguments[1];
+		draw(() -> context.lineTo(x, y));
+		return null;
+	}
+
+	// draws curve from path position to given coordinates
+	// this approaches but does not touch a control coordinate
+	private Object quadraticCurveTo(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double &&
+			arguments[3] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number, number).");
+		}
+
+		double xControl = (double) arguments[0], yControl = (double)arguments[1];
+		double xEnd = (double) arguments[2], yEnd = (double)arguments[3];
+		draw(() -> context.quadraticCurveTo(xControl, yControl, xEnd, yEnd));
+		return null;
+	}
+
+	// similar to quadratic curve but requires two control points
+	// which allows more flexibility
+	private Object bezierCurveTo(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double &&
+			arguments[3] instanceof Double &&
+			arguments[4] instanceof Double &&
+			arguments[5] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + 
+				"(number, number, number number, number, number).");
+		}
+		double xControl = (double) arguments[0], yControl = (double)arguments[1];
+		double xControl2 = (double) arguments[2], yControl2 = (double)arguments[3];
+		double xEnd = (double) arguments[4], yEnd = (double)arguments[5];
+		draw(() -> context.bezierCurveTo(xControl, yControl, xControl2, yControl2, xEnd, yEnd));
+		return null;
+	}
+
+	// adds arc to path
+	private Object arcTo(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double &&
+			arguments[3] instanceof Double &&
+			arguments[4] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + 
+				"(number, number, number, number, number).");
+		}
+
+		double x1 = (double) arguments[0], y1 = (double)arguments[1];
+		double x2 = (double) arguments[2], y2 = (double)arguments[3];
+		double radius = (double) arguments[4];
+		draw(() -> context.arcTo(x1, y1, x2, y2, radius));
+		return null;
+	}
+
+	// adds arc to path, allows user to specify angles
+	private Object arc(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double &&
+			arguments[3] instanceof Double &&
+			arguments[4] instanceof Double &&
+			arguments[5] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + 
+				"(number, number, number, number, number, number).");
+		}
+		double centerX = (double) arguments[0], centerY = (double)arguments[1];
+		double radiusX = (double) arguments[2], radiusY = (double)arguments[3];
+		double startAngle = (double) arguments[4], length = (double)arguments[5];
+		draw(() -> context.arc(centerX, centerY, radiusX, radiusY, startAngle, length));
+		return null;
 	}
 
 	public void clear() {
-		context.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+		draw(() -> context.clearRect(0, 0, canvas.getWidth(), canvas.getHeight()));
+	}
+
+	private void draw(Runnable command) {
+		endPixels();
+		commands.add(command);
+		if (commands.size() >= BATCH)
+			flush();
+	}
+
+	// records the pixels set since the last command as one command
+	private void endPixels() {
+		if (pixelCount == 0)
+			return;
+		int[] points = pixels;
+		int end = 3 * pixelCount;
+		pixels = new int[points.length];
+		pixelCount = 0;
+		commands.add(() -> {
+			for (int i = 0; i < end; i += 3)
+				pixelWriter.setArgb(points[i], points[i + 1], points[i + 2]);
+		});
+	}
+
+	// hands what has been drawn so far to the fx thread without waiting
+	// for it, the script's thread then goes on recording
+	void flush() {
+		endPixels();
+		if (commands.isEmpty())
+			return;
+		List<Runnable> batch = commands;
+		commands = new ArrayList<>();
+		Draw.onFxThreadLater(() -> {
+			for (Runnable command : batch)
+				command.run();
+		});
 	}
 
 	// takes in an object array and returns a double array
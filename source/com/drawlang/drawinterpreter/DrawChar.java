@@ -6,29 +6,32 @@ public class DrawChar extends DrawInstance {
 	
 	private char val;
 
+	// built-in methods shared by every char
+	static final NativeTable<DrawChar> METHODS = new NativeTable<DrawChar>()
+			.add("toAscii", 0, DrawChar::toAscii);
+
 	DrawChar(char val) {
 		super(null);
 		this.val = val;
 	}
 
+	@Override
+	NativeTable<?> nativeMethods() {
+		return METHODS;
+	}
+
 	@Override
 	Object get(Token name) {
-		switch (name.lexeme) {
-			case "toAscii":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 0;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						return (double) (int) val;
-					}
-				};
-			default:
-				throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
-		}
+		// methods read as values are bound to this char
+		int id = METHODS.idOf(name.symbol);
+		if (id >= 0)
+			return METHODS.bind(this, id, name);
+
+		throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+	}
+
+	private Object toAscii(Interpreter interpreter, Token name, Object[] arguments) {
+		return (double) (int) val;
 	}
 
 	@Override
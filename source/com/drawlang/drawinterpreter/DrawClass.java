@@ -5,41 +5,70 @@ import java.util.*;
 class DrawClass extends DrawInstance implements DrawCallable {
 	final String name;
 	final DrawClass superclass;
-	private final Map<String, DrawFunction> methods;
+	// methods and the symbols of their names, in the same order
+	private final int[] symbols;
+	private final DrawFunction[] methods;
+	// empty shape every instance of the class starts out with
+	final Shape instanceShape = new Shape(this);
 
 	DrawClass(DrawClass metaclass, String name, DrawClass superclass, Map<String, DrawFunction> methods) {
 		super(metaclass);
 		this.superclass = superclass;
 		this.name = name;
-		this.methods = methods;
+		int count = methods == null ? 0 : methods.size();
+		this.symbols = new int[count];
+		this.methods = new DrawFunction[count];
+		if (methods != null) {
+			int i = 0;
+			for (Map.Entry<String, DrawFunction> method : methods.entrySet()) {
+				this.symbols[i] = Symbols.intern(method.getKey());
+				this.methods[i++] = method.getValue();
+			}
+		}
 	}
 
-	DrawFunction findMethod(DrawInstance instance, String name) {
+	DrawFunction findMethod(DrawInstance instance, int symbol) {
 		// if method is defined return it and bind it to instance
 		// in local scope
-		if (methods.containsKey(name))
-			return methods.get(name).bind(instance);
+		DrawFunction method = lookUpMethod(symbol);
+		return method == null ? null : method.bind(instance);
+	}
+
+	// finds a method without binding it, searching the superclasses
+	DrawFunction lookUpMethod(int symbol) {
+		DrawFunction method = ownMethod(symbol);
+		if (method != null)
+			return method;
 
 		// if not found and superclass exists then search superclass
-		if (superclass != null) 
-			return superclass.findMethod(instance, name);
+		if (superclass != null)
+			return superclass.lookUpMethod(symbol);
 
 		return null;
 	}
 
+	// a method the class itself defines, or null
+	private DrawFunction ownMethod(int symbol) {
+		for (int i = 0; i < symbols.length; i++) {
+			if (symbols[i] == symbol)
+				return methods[i];
+		}
+		return null;
+	}
+
 	@Override
 	public String toString() {
 		return name;
 	}
 
 	@Override
-	public Object call(Interpreter interpreter, List<Object> arguments) {
+	public Object call(Interpreter interpreter, Object[] arguments) {
 		DrawInstance instance = new DrawInstance(this);
 		// gets constructor
-		DrawFunction initializer = methods.get("init");
+		DrawFunction initializer = ownMethod(Symbols.INIT);
 		if (initializer != null) {
 			// calls constructor on object creation with arguments
-			initializer.bind(instance).call(interpreter, arguments);
+			initializer.invoke(interpreter, instance, arguments);
 		}
 
 		return instance;
@@ -47,7 +76,7 @@ class DrawClass extends DrawInstance implements DrawCallable {
 
 	@Override
 	public int arity() {
-		DrawFunction initializer = methods.get("init");
+		DrawFunction initializer = ownMethod(Symbols.INIT);
 		// returns number of arguments constructor takes or 0
 		// if it doesn't exist
 		return initializer == null ? 0 : initializer.arity();
@@ -13,15 +13,11 @@ public class DrawColor extends DrawInstance {
 
 	@Override
 	Object get(Token name) {
-		switch (name.lexeme) {
-			case "r": return color.getRed()*255;
-			case "g": return color.getGreen()*255;
-			case "b": return color.getBlue()*255;
-			case "a": return color.getOpacity()*255;
-
-			default:
-				throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
-		}
+		if (name.symbol == Symbols.R) return color.getRed()*255;
+		if (name.symbol == Symbols.G) return color.getGreen()*255;
+		if (name.symbol == Symbols.B) return color.getBlue()*255;
+		if (name.symbol == Symbols.A) return color.getOpacity()*255;
+		throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
 	}
 	
 }
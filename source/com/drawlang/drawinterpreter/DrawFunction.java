@@ -3,24 +3,31 @@ package com.drawlang.drawinterpreter;
 import java.util.*;
 
 class DrawFunction implements DrawCallable {
-	private final String name;
-	private final Expr.Function declaration;
-	private final Environment closure;
-	private final boolean isInitializer;
-	
-	DrawFunction(String name, Expr.Function declaration, Environment closure, boolean isInitializer) {
+	final String name;
+	final Expr.Function declaration;
+	// cells of the variables the function captured when it was made
+	final Cell[] closure;
+	final boolean isInitializer;
+	// instance a method was bound to when it is used as a value
+	final DrawInstance receiver;
+
+	DrawFunction(String name, Expr.Function declaration, Cell[] closure, boolean isInitializer) {
+		this(name, declaration, closure, isInitializer, null);
+	}
+
+	DrawFunction(String name, Expr.Function declaration, Cell[] closure, boolean isInitializer,
+			DrawInstance receiver) {
 		this.isInitializer = isInitializer;
 		this.name = name;
 		this.closure = closure;
 		this.declaration = declaration;
+		this.receiver = receiver;
 	}
 
+	// only needed when a method is used as a value, calls such as
+	// obj.method() invoke it with the receiver directly
 	DrawFunction bind(DrawInstance instance) {
-		Environment environment = new Environment(closure);
-		// associates this to instance - allows instance to
-		// refer to itself
-		environment.define("this", instance);
-		return new DrawFunction(name, declaration, environment, false);
+		return new DrawFunction(name, declaration, closure, isInitializer, instance);
 	}
 
 	@Override
@@ -36,26 +43,140 @@ class DrawFunction implements DrawCallable {
 
 	// calls user defined function
 	@Override
-	public Object call(Interpreter interpreter, List<Object> arguments) {
-		Environment environment = new Environment(closure);
-		// adds parameters to scope
-		for (int i = 0; i < declaration.parameters.size(); i++) {
-			environment.define(declaration.parameters.get(i).lexeme, arguments.get(i));
-		}
+	public Object call(Interpreter interpreter, Object[] arguments) {
+		return invoke(interpreter, receiver, arguments);
+	}
 
-		try {
-			// executes function body
-			interpreter.executeBlock(declaration.body, environment);
-		} catch (Return returnValue) {
-			return returnValue.value;
-		}
-		// returns instance if constructor
-		if (isInitializer) return closure.getAt(0, "this");
-		return null;
+	@Override
+	public Object call0(Interpreter interpreter) {
+		return invoke0(interpreter, receiver);
+	}
+
+	@Override
+	public Object call1(Interpreter interpreter, Object a) {
+		return invoke1(interpreter, receiver, a);
 	}
 
+	@Override
+	public Object call2(Interpreter interpreter, Object a, Object b) {
+		return invoke2(interpreter, receiver, a, b);
+	}
 
+	@Override
+	public Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+		return invoke3(interpreter, receiver, a, b, c);
+	}
 
-}
+	@Override
+	public Object call4(Interpreter interpreter, Object a, Object b, Object c, Object d) {
+		return invoke4(interpreter, receiver, a, b, c, d);
+	}
 
+	// calls the function, a method gets the receiver in slot 0 of its
+	// frame so no bound copy of it is needed. The arguments are written
+	// straight into the frame's slots after it
+	Object invoke(Interpreter interpreter, DrawInstance receiver, Object[] arguments) {
+		Environment frame = frame(receiver);
+		System.arraycopy(arguments, 0, frame.values, declaration.isMethod ? 1 : 0, arguments.length);
+		return run(interpreter, frame);
+	}
 
+	Object invoke0(Interpreter interpreter, DrawInstance receiver) {
+		return run(interpreter, frame(receiver));
+	}
+
+	Object invoke1(Interpreter interpreter, DrawInstance receiver, Object a) {
+		Environment frame = frame(receiver);
+		int first = declaration.isMethod ? 1 : 0;
+		frame.values[first] = a;
+		return run(interpreter, frame);
+	}
+
+	Object invoke2(Interpreter interpreter, DrawInstance receiver, Object a, Object b) {
+		Environment frame = frame(receiver);
+		int first = declaration.isMethod ? 1 : 0;
+		frame.values[first] = a;
+		frame.values[first + 1] = b;
+		return run(interpreter, frame);
+	}
+
+	Object invoke3(Interpreter interpreter, DrawInstance receiver, Object a, Object b, Object c) {
+		Environment frame = frame(receiver);
+		int first = declaration.isMethod ? 1 : 0;
+		frame.values[first] = a;
+		frame.values[first + 1] = b;
+		frame.values[first + 2] = c;
+		return run(interpreter, frame);
+	}
+
+	Object invoke4(Interpreter interpreter, DrawInstance receiver, Object a, Object b, Object c, Object d) {
+		Environment frame = frame(receiver);
+		int first = declaration.isMethod ? 1 : 0;
+		frame.values[first] = a;
+		frame.values[first + 1] = b;
+		frame.values[first + 2] = c;
+		frame.values[first + 3] = d;
+		return run(interpreter, frame);
+	}
+
+	// creates the environment for a call, holding the receiver of a
+	// method in slot 0
+	private Environment frame(DrawInstance receiver) {
+		Environment frame = new Environment(closure, declaration.size);
+		if (declaration.isMethod)
+			frame.values[0] = receiver;
+		return frame;
+	}
+
+	// runs the body in a frame that has its parameters filled in. A body
+	// returning a tail call leaves the callee with the interpreter, which
+	// then runs in this loop instead of nesting another call
+	Object run(Interpreter interpreter, Environment frame) {
+		DrawFunction function = this;
+		Object result = execute(interpreter, frame);
+		while (result == Interpreter.TAIL_CALL) {
+			DrawFunction callee = interpreter.tailFunction;
+			frame = callee.tailFrame(function, frame, interpreter.tailReceiver, interpreter.tailArguments);
+			function = callee;
+			result = function.execute(interpreter, frame);
+		}
+		return result;
+	}
+
+	// a function calling itself reuses its frame for the tail call,
+	// closures made in the body hold cells rather than the frame
+	private Environment tailFrame(DrawFunction caller, Environment frame, DrawInstance receiver,
+			Object[] arguments) {
+		if (caller.declaration != declaration || caller.closure != closure)
+			frame = new Environment(closure, declaration.size);
+
+		int first = 0;
+		if (declaration.isMethod)
+			frame.values[first++] = receiver;
+		System.arraycopy(arguments, 0, frame.values, first, arguments.length);
+		return frame;
+	}
+
+	private Object execute(Interpreter interpreter, Environment frame) {
+		frame.box(declaration);
+		// hot functions run as jvm bytecode once compiled
+		if (declaration.compiled != null) {
+			Object result = declaration.compiled.call(frame.values);
+			if (result != JIT.DEOPT)
+				return result;
+			JIT.deoptimize(declaration);
+		} else if (JIT.enabled && !isInitializer && ++declaration.calls == JIT.threshold) {
+			JIT.compile(declaration);
+		}
+
+		// executes function body
+		if (interpreter.executeBlock(declaration.body, frame) == Interpreter.RETURN)
+			return interpreter.takeReturnValue();
+		// returns instance if constructor, closures may have moved it into a cell
+		if (isInitializer) {
+			Object instance = frame.values[0];
+			return instance instanceof Cell ? ((Cell) instance).value : instance;
+		}
+		return null;
+	}
+}
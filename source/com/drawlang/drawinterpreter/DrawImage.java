@@ -11,8 +11,20 @@ public class DrawImage extends DrawInstance {
 	public WritableImage image;
 	private PixelWriter pixelWriter;
 	private PixelReader pixelReader;
+	// set once a canvas has been asked to draw the image, its pixels are
+	// copied before they next change so the canvas draws them as they
+	// were when it was asked
+	private boolean queued = false;
 
 
+	// built-in methods shared by every image
+	static final NativeTable<DrawImage> METHODS = new NativeTable<DrawImage>()
+			.add("getSubimage", 4, DrawImage::getSubimage)
+			.add("getPixel", 2, DrawImage::getPixel)
+			.add("resizeImage", 2, DrawImage::resizeImage)
+			.add("setTransparentColor", 1, DrawImage::setTransparentColor)
+			.add("setPixel", 3, DrawImage::setPixel);
+
 	public DrawImage(WritableImage image) {
 		super(null);
 		this.image = image;
@@ -20,151 +32,129 @@ public class DrawImage extends DrawInstance {
 		pixelWriter = image.getPixelWriter();
 	}
 
+	// the image for a canvas to draw later on the fx thread
+	WritableImage toDraw() {
+		queued = true;
+		return image;
+	}
+
+	@Override
+	NativeTable<?> nativeMethods() {
+		return METHODS;
+	}
+
 	@Override
 	Object get(Token name) {
-		switch (name.lexeme) {
-			case "getSubimage":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 4;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof Double &&
-							arguments.get(3) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number, number).");
-						}
-
-						int x = (int)(double)arguments.get(0), y = (int)(double)arguments.get(1);
-						int w = (int)(double)arguments.get(2), h = (int)(double)arguments.get(3);
-						return new DrawImage(new WritableImage(pixelReader, x, y, w, h));
-					}
-				};
-			// returns a pixel at a specified position
-			case "getPixel":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 2;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
-						} 
-
-						int x = (int)(double) arguments.get(0), y = (int)(double)arguments.get(1);
-						return new DrawColor(pixelReader.getColor(x, y));
-					}
-				};
-
-				// returns a resized version of the image
-				case "resizeImage":
-					return new DrawCallable() {
-						@Override
-						public int arity() {
-							return 2;
-						}
-
-						@Override
-						public Object call(Interpreter interpreter, List<Object> arguments) {
-							if (
-								!(arguments.get(0) instanceof Double &&
-								arguments.get(1) instanceof Double)
-								) {
-								throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number).");
-							} 
-
-							int w = (int)(double)arguments.get(0), h = (int)(double)arguments.get(1);
-							// create image view
-							ImageView imageView = new ImageView(image);
-							// resize image view
-							imageView.setFitWidth(w);
-							imageView.setFitHeight(h);
-							// convert image view to image
-							SnapshotParameters sp = new SnapshotParameters();
-							sp.setFill(Color.TRANSPARENT);
-							return new DrawImage(new WritableImage(imageView.snapshot(sp, null).getPixelReader(), w, h));
-						}
-					};
-
-			// returns a new image with a given color removed
-			case "setTransparentColor":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof DrawColor)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number).");
-						} 
-
-						// gets color to be removed
-						Color transparentColor = ((DrawColor)arguments.get(0)).color;
-						WritableImage result = new WritableImage(pixelReader, (int)image.getWidth(), (int)image.getHeight());
-						PixelReader resultReader = result.getPixelReader();
-						PixelWriter resultWriter = result.getPixelWriter();
-						for(int y = 0; y < image.getHeight(); y++) {
-							for (int x = 0; x < image.getWidth(); x++) {
-								// if transparent color is equal to the pixel then make the pixel transparent
-								Color pixel = pixelReader.getColor(x, y);
-								if (transparentColor.equals(pixel)) {
-									resultWriter.setColor(x, y, 
-										new Color(pixel.getRed(), pixel.getGreen(), pixel.getBlue(), 0));
-								}
-							}
-						}
-						// returns the new version of the image with the transparency
-						return new DrawImage(result);
-					}
-				};
-
-			// sets a pixel to a given colour
-			case "setPixel":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 3;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (
-							!(arguments.get(0) instanceof Double &&
-							arguments.get(1) instanceof Double &&
-							arguments.get(2) instanceof DrawColor)
-							) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number).");
-						} 
-						int x = (int)(double) arguments.get(0), y = (int)(double)arguments.get(1);
-						Color color = ((DrawColor) arguments.get(2)).color;
-						pixelWriter.setColor(x, y, color);
-						return null;
-					}
-				};
-			case "width":
-				return image.getWidth();
-			case "height":
-				return image.getHeight();
-			default:
-				throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+		// methods read as values are bound to this image
+		int id = METHODS.idOf(name.symbol);
+		if (id >= 0)
+			return METHODS.bind(this, id, name);
+
+		if (name.symbol == Symbols.WIDTH)
+			return image.getWidth();
+		if (name.symbol == Symbols.HEIGHT)
+			return image.getHeight();
+		throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+
+	}
+
+	private Object getSubimage(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof Double &&
+			arguments[3] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number, number).");
 		}
 
+		int x = (int)(double)arguments[0], y = (int)(double)arguments[1];
+		int w = (int)(double)arguments[2], h = (int)(double)arguments[3];
+		return new DrawImage(new WritableImage(pixelReader, x, y, w, h));
+	}
+
+	// returns a pixel at a specified position
+	private Object getPixel(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
+		} 
+
+		int x = (int)(double) arguments[0], y = (int)(double)arguments[1];
+		return new DrawColor(pixelReader.getColor(x, y));
+	}
+
+	// returns a resized version of the image
+	private Object resizeImage(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number).");
+		} 
+
+		int w = (int)(double)arguments[0], h = (int)(double)arguments[1];
+		// create image view
+		ImageView imageView = new ImageView(image);
+		// resize image view
+		imageView.setFitWidth(w);
+		imageView.setFitHeight(h);
+		// convert image view to image
+		SnapshotParameters sp = new SnapshotParameters();
+		sp.setFill(Color.TRANSPARENT);
+		// snapshots can only be taken on the fx thread
+		WritableImage resized = Draw.onFxThread(() -> imageView.snapshot(sp, null));
+		return new DrawImage(new WritableImage(resized.getPixelReader(), w, h));
+	}
+
+	// returns a new image with a given color removed
+	private Object setTransparentColor(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof DrawColor)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number).");
+		} 
+
+		// gets color to be removed
+		Color transparentColor = ((DrawColor)arguments[0]).color;
+		WritableImage result = new WritableImage(pixelReader, (int)image.getWidth(), (int)image.getHeight());
+		PixelReader resultReader = result.getPixelReader();
+		PixelWriter resultWriter = result.getPixelWriter();
+		for(int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				// if transparent color is equal to the pixel then make the pixel transparent
+				Color pixel = pixelReader.getColor(x, y);
+				if (transparentColor.equals(pixel)) {
+					resultWriter.setColor(x, y, 
+						new Color(pixel.getRed(), pixel.getGreen(), pixel.getBlue(), 0));
+				}
+			}
+		}
+		// returns the new version of the image with the transparency
+		return new DrawImage(result);
+	}
+
+	// sets a pixel to a given colour
+	private Object setPixel(Interpreter interpreter, Token name, Object[] arguments) {
+		if (
+			!(arguments[0] instanceof Double &&
+			arguments[1] instanceof Double &&
+			arguments[2] instanceof DrawColor)
+			) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number, number).");
+		} 
+		int x = (int)(double) arguments[0], y = (int)(double)arguments[1];
+		Color color = ((DrawColor) arguments[2]).color;
+		if (queued) {
+			image = new WritableImage(pixelReader, (int) image.getWidth(), (int) image.getHeight());
+			pixelReader = image.getPixelReader();
+			pixelWriter = image.getPixelWriter();
+			queued = false;
+		}
+		pixelWriter.setColor(x, y, color);
+		return null;
 	}
 }
 
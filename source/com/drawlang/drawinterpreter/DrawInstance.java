@@ -3,24 +3,35 @@ package com.drawlang.drawinterpreter;
 import java.util.*;
 
 class DrawInstance {
+	private static final Object[] NO_FIELDS = {};
+
 	private DrawClass drawClass;
-	private final Map<String, Object> fields = new HashMap<>();
+	// field values live in slots at the indices the shape gives them
+	Shape shape;
+	Object[] slots = NO_FIELDS;
+	// fields of an instance in dictionary mode by symbol, null otherwise
+	private Map<Integer, Object> dictionary = null;
 
 	DrawInstance(DrawClass drawClass) {
 		this.drawClass = drawClass;
+		this.shape = drawClass == null ? Shape.ROOT : drawClass.instanceShape;
 	}
 
 	Object get(Token name) {
-		// if the field name is a key in the fields map
-		// return value associated with it
-		if (fields.containsKey(name.lexeme)) {
-			return fields.get(name.lexeme);
+		// if the instance has a field with that name
+		// return its value
+		int index = shape.indexOf(name.symbol);
+		if (index >= 0) {
+			return slots[index];
+		}
+		if (dictionary != null && dictionary.containsKey(name.symbol)) {
+			return dictionary.get(name.symbol);
 		}
 
 		// if field is not a variable then assume it is a method
 		// and search
 
-		DrawFunction method = drawClass.findMethod(this, name.lexeme);
+		DrawFunction method = drawClass.findMethod(this, name.symbol);
 		if (method != null) return method;
 
 		// otherwise throw error
@@ -28,7 +39,46 @@ class DrawInstance {
 	}
 
 	void set(Token name, Object value) {
-		fields.put(name.lexeme, value);
+		int index = shape.indexOf(name.symbol);
+		if (index >= 0) {
+			slots[index] = value;
+			return;
+		}
+		if (dictionary != null) {
+			dictionary.put(name.symbol, value);
+			return;
+		}
+
+		// a new field moves the instance to the next shape
+		Shape next = shape.add(name.symbol);
+		if (next == null) {
+			toDictionary();
+			dictionary.put(name.symbol, value);
+			return;
+		}
+		append(next, value);
+	}
+
+	// adds a field at the end of the slots, next is the shape with it
+	void append(Shape next, Object value) {
+		if (next.size > slots.length)
+			slots = Arrays.copyOf(slots, Math.max(4, slots.length * 2));
+		slots[shape.size] = value;
+		shape = next;
+	}
+
+	// moves the fields into a map, for instances with too many fields
+	private void toDictionary() {
+		dictionary = new HashMap<>();
+		for (int i = 0; i < shape.size; i++)
+			dictionary.put(shape.symbolAt(i), slots[i]);
+		shape = Shape.DICTIONARY;
+		slots = NO_FIELDS;
+	}
+
+	// built-in methods of native types, null for instances of classes
+	NativeTable<?> nativeMethods() {
+		return null;
 	}
 
 	@Override
@@ -36,4 +86,3 @@ class DrawInstance {
 		return drawClass.name + " instance";
 	}
 }
-
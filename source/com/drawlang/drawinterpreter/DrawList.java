@@ -6,116 +6,74 @@ public class DrawList extends DrawInstance {
 
 	private final ArrayList elements;
 
+	// built-in methods shared by every list
+	static final NativeTable<DrawList> METHODS = new NativeTable<DrawList>()
+			.add("add", 1, DrawList::add)
+			.add("addTo", 2, DrawList::addTo)
+			.add("get", 1, DrawList::get)
+			.add("clear", 0, DrawList::clear)
+			.add("remove", 1, DrawList::remove)
+			.add("size", 0, DrawList::size)
+			.add("toArray", 0, DrawList::toArray);
+
 	DrawList() {
 		super(null);
 		elements = new ArrayList();
 	}
 
+	@Override
+	NativeTable<?> nativeMethods() {
+		return METHODS;
+	}
+
 	@Override
 	Object get(Token name) {
-		switch (name.lexeme) {
-			case "add":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						elements.add(arguments.get(0));
-						return null;
-					}
-				};
-			case "addTo":
-				return new DrawCallable() {
-						@Override
-						public int arity() {
-							return 2;
-						}
-
-						@Override
-						public Object call(Interpreter interpreter, List<Object> arguments) {
-							if (!(arguments.get(0) instanceof Double)) {
-								throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-							}
-							elements.add((int)(double) arguments.get(0), arguments.get(1));
-							return null;
-						}
-					};
-			case "get":
-				return new DrawCallable() {
-						@Override
-						public int arity() {
-							return 1;
-						}
-
-						@Override
-						public Object call(Interpreter interpreter, List<Object> arguments) {
-							if (!(arguments.get(0) instanceof Double)) {
-								throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-							}
-							return elements.get((int)(double) arguments.get(0));
-						}
-					};
-			case "clear":
-				return new DrawCallable() {
-						@Override
-						public int arity() {
-							return 0;
-						}
-
-						@Override
-						public Object call(Interpreter interpreter, List<Object> arguments) {
-							elements.clear();
-							return null;
-						}
-					};
-
-			case "remove":
-				return new DrawCallable() {
-						@Override
-						public int arity() {
-							return 1;
-						}
-
-						@Override
-						public Object call(Interpreter interpreter, List<Object> arguments) {
-							if (!(arguments.get(0) instanceof Double)) {
-								throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-							}
-							return elements.remove((int)(double) arguments.get(0));
-						}
-					};
-
-			case "size":
-				return new DrawCallable() {
-						@Override
-						public int arity() {
-							return 0;
-						}
-
-						@Override
-						public Object call(Interpreter interpreter, List<Object> arguments) {
-							return (double)elements.size();
-						}
-					};
-
-			case "toArray":
-				return new DrawCallable() {
-						@Override
-						public int arity() {
-							return 0;
-						}
-
-						@Override
-						public Object call(Interpreter interpreter, List<Object> arguments) {
-							return new DrawArray(elements.toArray());
-						}
-					};
-			default:
-				throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+		// methods read as values are bound to this list
+		int id = METHODS.idOf(name.symbol);
+		if (id >= 0)
+			return METHODS.bind(this, id, name);
+
+		throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+	}
+
+	private Object add(Interpreter interpreter, Token name, Object[] arguments) {
+		elements.add(arguments[0]);
+		return null;
+	}
+
+	private Object addTo(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
 		}
+		elements.add((int)(double) arguments[0], arguments[1]);
+		return null;
+	}
+
+	private Object get(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		return elements.get((int)(double) arguments[0]);
+	}
+
+	private Object clear(Interpreter interpreter, Token name, Object[] arguments) {
+		elements.clear();
+		return null;
+	}
+
+	private Object remove(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		return elements.remove((int)(double) arguments[0]);
+	}
+
+	private Object size(Interpreter interpreter, Token name, Object[] arguments) {
+		return (double)elements.size();
+	}
+
+	private Object toArray(Interpreter interpreter, Token name, Object[] arguments) {
+		return new DrawArray(elements.toArray());
 	}
 
 	@Override
@@ -7,124 +7,78 @@ public class DrawMap extends DrawInstance {
 	
 	private final Map map;
 
+	// built-in methods shared by every map
+	static final NativeTable<DrawMap> METHODS = new NativeTable<DrawMap>()
+			.add("get", 1, DrawMap::get)
+			.add("put", 2, DrawMap::put)
+			.add("clear", 0, DrawMap::clear)
+			.add("containsKey", 1, DrawMap::containsKey)
+			.add("entries", 0, DrawMap::entries)
+			.add("keys", 0, DrawMap::keys)
+			.add("values", 0, DrawMap::values)
+			.add("remove", 1, DrawMap::remove);
+
 	DrawMap() {
 		super(null);
 		map = new HashMap<String, Object>();
 	}
 
+	@Override
+	NativeTable<?> nativeMethods() {
+		return METHODS;
+	}
+
 	@Override
 	Object get(Token name) {
-		switch (name.lexeme) {
-			case "get":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						DrawString key = (DrawString) arguments.get(0);
-						return map.get(key.toString());
-					}
-				};
-			case "put":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 2;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						DrawString key = (DrawString) arguments.get(0);
-						Object value = arguments.get(1);
-						return map.put(key.toString(), value);
-					}
-				};
-			case "clear":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 0;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						map.clear();
-						return null;
-					}
-				};
-			case "containsKey":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						DrawString key = (DrawString) arguments.get(0);
-						return map.containsKey(key.toString());
-					}
-				};
-			case "entries":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 0;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						return new DrawArray(map.entrySet().toArray());
-					}
-				};
-			case "keys":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 0;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						Object[] strings = map.keySet().toArray();
-						DrawString[] newKeys = new DrawString[strings.length];
-						for (int i = 0; i < newKeys.length; i++) {
-							newKeys[i] = new DrawString((String) strings[i]);
-						}
-						return new DrawArray(newKeys);
-					}
-				};
-			case "values":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 0;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						return new DrawArray(map.values().toArray());
-					}
-				};
-			case "remove":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						DrawString key = (DrawString) arguments.get(0);
-						return map.remove(key.toString());
-					}
-				};
-			default:
-				throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+		// methods read as values are bound to this map
+		int id = METHODS.idOf(name.symbol);
+		if (id >= 0)
+			return METHODS.bind(this, id, name);
+
+		throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+	}
+
+	private Object get(Interpreter interpreter, Token name, Object[] arguments) {
+		DrawString key = (DrawString) arguments[0];
+		return map.get(key.toString());
+	}
+
+	private Object put(Interpreter interpreter, Token name, Object[] arguments) {
+		DrawString key = (DrawString) arguments[0];
+		Object value = arguments[1];
+		return map.put(key.toString(), value);
+	}
+
+	private Object clear(Interpreter interpreter, Token name, Object[] arguments) {
+		map.clear();
+		return null;
+	}
+
+	private Object containsKey(Interpreter interpreter, Token name, Object[] arguments) {
+		DrawString key = (DrawString) arguments[0];
+		return map.containsKey(key.toString());
+	}
+
+	private Object entries(Interpreter interpreter, Token name, Object[] arguments) {
+		return new DrawArray(map.entrySet().toArray());
+	}
+
+	private Object keys(Interpreter interpreter, Token name, Object[] arguments) {
+		Object[] strings = map.keySet().toArray();
+		DrawString[] newKeys = new DrawString[strings.length];
+		for (int i = 0; i < newKeys.length; i++) {
+			newKeys[i] = new DrawString((String) strings[i]);
 		}
+		return new DrawArray(newKeys);
+	}
+
+	private Object values(Interpreter interpreter, Token name, Object[] arguments) {
+		return new DrawArray(map.values().toArray());
+	}
+
+	private Object remove(Interpreter interpreter, Token name, Object[] arguments) {
+		DrawString key = (DrawString) arguments[0];
+		return map.remove(key.toString());
 	}
 
 	@Override
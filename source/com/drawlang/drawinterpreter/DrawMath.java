@@ -4,394 +4,226 @@ import java.util.*;
 
 class DrawMath extends DrawClass {
 
+	// built-in methods shared by every Math object
+	static final NativeTable<DrawMath> METHODS = new NativeTable<DrawMath>()
+			.add("abs", 1, DrawMath::abs)
+			.add("acos", 1, DrawMath::acos)
+			.add("asin", 1, DrawMath::asin)
+			.add("cbrt", 1, DrawMath::cbrt)
+			.add("ceil", 1, DrawMath::ceil)
+			.add("cos", 1, DrawMath::cos)
+			.add("exp", 1, DrawMath::exp)
+			.add("floor", 1, DrawMath::floor)
+			.add("hypot", 2, DrawMath::hypot)
+			.add("ln", 1, DrawMath::ln)
+			.add("log", 2, DrawMath::log)
+			.add("log10", 1, DrawMath::log10)
+			.add("max", 2, DrawMath::max)
+			.add("min", 2, DrawMath::min)
+			.add("pow", 2, DrawMath::pow)
+			.add("random", 0, DrawMath::random)
+			.add("round", 1, DrawMath::round)
+			.add("sin", 1, DrawMath::sin)
+			.add("sqrt", 1, DrawMath::sqrt)
+			.add("tan", 1, DrawMath::tan)
+			.add("toDegrees", 1, DrawMath::toDegrees)
+			.add("toRadians", 1, DrawMath::toRadians);
+
 	DrawMath() {
 		super(null, null, null, null);
 		
 	}
 
 	@Override
-	Object get(Token name) {
-		switch (name.lexeme) {
-			case "abs":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.abs(num);
-					}
-				};
-
-			case "acos":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.acos(num);
-					}
-				};
-
-			case "asin":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.asin(num);
-					}
-				};
-			
-			case "cbrt":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.cbrt(num);
-					}
-				};
-
-			case "ceil":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.ceil(num);
-					}
-				};
-
-			case "cos":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.cos(num);
-					}
-				};
-
-			case "exp":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.exp(num);
-					}
-				};
-
-			case "floor": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.floor(num);
-					}
-				};
-
-			case "hypot": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 2;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double && arguments.get(1) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
-						}
-						double x = (double)arguments.get(0), y = (double)arguments.get(1);
-						return Math.hypot(x, y);
-					}
-				};
-
-			case "ln": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.log(num);
-					}
-				};
-
-			case "log": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 2;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
-						}
-						double base = (double)arguments.get(0), num = (double)arguments.get(1);
-						// uses log maths to return log of any bases by dividing with log10
-						return Math.log10(num) / Math.log10(base);
-					}
-				};
-
-			case "log10": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
-
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.log10(num);
-					}
-				};
+	NativeTable<?> nativeMethods() {
+		return METHODS;
+	}
 
-			case "max": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 2;
-					}
+	@Override
+	Object get(Token name) {
+		// methods read as values are bound to this Math object
+		int id = METHODS.idOf(name.symbol);
+		if (id >= 0)
+			return METHODS.bind(this, id, name);
+
+		if (name.symbol == Symbols.E)
+			return Math.E;
+		if (name.symbol == Symbols.PI)
+			return Math.PI;
+		throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+	}
 
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double && arguments.get(1) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
-						}
-						double x = (double)arguments.get(0), y = (double)arguments.get(1);
-						return Math.max(x, y);
-					}
-				};
+	private Object abs(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.abs(num);
+	}
 
-			case "min": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 2;
-					}
+	private Object acos(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.acos(num);
+	}
 
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double && arguments.get(1) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
-						}
-						double x = (double)arguments.get(0), y = (double)arguments.get(1);
-						return Math.min(x, y);
-					}
-				};
+	private Object asin(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.asin(num);
+	}
 
-			case "pow": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 2;
-					}
+	private Object cbrt(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.cbrt(num);
+	}
 
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double && arguments.get(1) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
-						}
-						double x = (double)arguments.get(0), y = (double)arguments.get(1);
-						return Math.pow(x, y);
-					}
-				};
+	private Object ceil(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.ceil(num);
+	}
 
-			case "random":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 0;
-					}
+	private Object cos(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.cos(num);
+	}
 
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						return Math.random();
-					}
-				};
+	private Object exp(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.exp(num);
+	}
 
-			case "round": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
+	private Object floor(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.floor(num);
+	}
 
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return (double) Math.round(num);
-					}
-				};
+	private Object hypot(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double && arguments[1] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
+		}
+		double x = (double)arguments[0], y = (double)arguments[1];
+		return Math.hypot(x, y);
+	}
 
-			case "sin": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
+	private Object ln(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.log(num);
+	}
 
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.sin(num);
-					}
-				};
+	private Object log(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
+		}
+		double base = (double)arguments[0], num = (double)arguments[1];
+		// uses log maths to return log of any bases by dividing with log10
+		return Math.log10(num) / Math.log10(base);
+	}
 
-			case "sqrt": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
+	private Object log10(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.log10(num);
+	}
 
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.sqrt(num);
-					}
-				};
+	private Object max(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double && arguments[1] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
+		}
+		double x = (double)arguments[0], y = (double)arguments[1];
+		return Math.max(x, y);
+	}
 
-			case "tan": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
+	private Object min(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double && arguments[1] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
+		}
+		double x = (double)arguments[0], y = (double)arguments[1];
+		return Math.min(x, y);
+	}
 
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.tan(num);
-					}
-				};
+	private Object pow(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double && arguments[1] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
+		}
+		double x = (double)arguments[0], y = (double)arguments[1];
+		return Math.pow(x, y);
+	}
 
-			case "toDegrees": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
+	private Object random(Interpreter interpreter, Token name, Object[] arguments) {
+		return Math.random();
+	}
 
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.toDegrees(num);
-					}
-				};
+	private Object round(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return (double) Math.round(num);
+	}
 
-			case "toRadians": 
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
+	private Object sin(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.sin(num);
+	}
 
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						double num = (double)arguments.get(0);
-						return Math.toRadians(num);
-					}
-				};
+	private Object sqrt(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.sqrt(num);
+	}
 
-			case "E":
-				return Math.E;
+	private Object tan(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.tan(num);
+	}
 
-			case "PI":
-				return Math.PI;
+	private Object toDegrees(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
+		}
+		double num = (double)arguments[0];
+		return Math.toDegrees(num);
+	}
 
-			default:
-				throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+	private Object toRadians(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
 		}
+		double num = (double)arguments[0];
+		return Math.toRadians(num);
 	}
 
 }
@@ -6,52 +6,48 @@ class DrawString extends DrawInstance {
 	
 	private String str;
 
+	// built-in methods shared by every string
+	static final NativeTable<DrawString> METHODS = new NativeTable<DrawString>()
+			.add("substring", 2, DrawString::substring)
+			.add("charAt", 1, DrawString::charAt);
+
 	DrawString(String str) {
 		super(null);
 		this.str = str;
 	}
 
+	@Override
+	NativeTable<?> nativeMethods() {
+		return METHODS;
+	}
+
 	@Override
 	Object get(Token name) {
-		switch (name.lexeme) {
-			case "length": 
-				return (double)str.length();
-			case "substring":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 2;
-					}
+		// methods read as values are bound to this string
+		int id = METHODS.idOf(name.symbol);
+		if (id >= 0)
+			return METHODS.bind(this, id, name);
+
+		if (name.symbol == Symbols.LENGTH)
+			return (double)str.length();
+		throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+	}
 
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double && arguments.get(1) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
-						}
-						int start = Integer.valueOf(((Double)arguments.get(0)).intValue());
-						int end = Integer.valueOf(((Double)arguments.get(1)).intValue());
-						return new DrawString(str.substring(start, end));
-					}
-				};
-			case "charAt":
-				return new DrawCallable() {
-					@Override
-					public int arity() {
-						return 1;
-					}
+	private Object substring(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double && arguments[1] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number, number).");
+		}
+		int start = Integer.valueOf(((Double)arguments[0]).intValue());
+		int end = Integer.valueOf(((Double)arguments[1]).intValue());
+		return new DrawString(str.substring(start, end));
+	}
 
-					@Override
-					public Object call(Interpreter interpreter, List<Object> arguments) {
-						if (!(arguments.get(0) instanceof Double)) {
-							throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
-						}
-						int index = Integer.valueOf(((Double)arguments.get(0)).intValue());
-						return new DrawChar(str.charAt(index));
-					}
-				};
-			default:
-				throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+	private Object charAt(Interpreter interpreter, Token name, Object[] arguments) {
+		if (!(arguments[0] instanceof Double)) {
+			throw new RuntimeError(name, "Expected " + name.lexeme + "(number).");
 		}
+		int index = Integer.valueOf(((Double)arguments[0]).intValue());
+		return new DrawChar(str.charAt(index));
 	}
 
 	@Override
@@ -0,0 +1,115 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.*;
+
+// removes code that can never run: the statements after a return, break
+// or continue, and local functions their frame never reads, such as
+// helpers the Inliner put in place of every call to. Runs after the
+// Inliner and before the Fuser
+
+class Eliminator extends Rewriter {
+
+	static void eliminate(List<Stmt> statements) {
+		new Eliminator().frame(statements);
+	}
+
+	// rewrites the body of a function, or the script, then drops the
+	// local functions declared in it that nothing reads
+	private void frame(List<Stmt> body) {
+		rewrite(body);
+		prune(body, Scan.of(body).reads);
+	}
+
+	@Override
+	void rewrite(List<Stmt> statements) {
+		super.rewrite(statements);
+		for (int i = 0; i < statements.size() - 1; i++) {
+			if (exits(statements.get(i))) {
+				Draw.trace("removed unreachable code after " + describe(statements.get(i)));
+				statements.subList(i + 1, statements.size()).clear();
+				return;
+			}
+		}
+	}
+
+	// whether running the statement always leaves the block it is in. A
+	// break or continue in a do-while's first run stays in the loop
+	private static boolean exits(Stmt stmt) {
+		if (stmt instanceof Stmt.Return || stmt instanceof Stmt.Break || stmt instanceof Stmt.Continue)
+			return true;
+		if (stmt instanceof Stmt.Block && !Compiler.isDoWhile((Stmt.Block) stmt)) {
+			List<Stmt> statements = ((Stmt.Block) stmt).statements;
+			return !statements.isEmpty() && exits(statements.get(statements.size() - 1));
+		}
+		if (stmt instanceof Stmt.If) {
+			Stmt.If ifStmt = (Stmt.If) stmt;
+			return ifStmt.elseBranch != null && exits(ifStmt.thenBranch) && exits(ifStmt.elseBranch);
+		}
+		return false;
+	}
+
+	private static String describe(Stmt stmt) {
+		if (stmt instanceof Stmt.Return)
+			return "return [line " + ((Stmt.Return) stmt).keyword.line + "]";
+		if (stmt instanceof Stmt.Break)
+			return "break";
+		if (stmt instanceof Stmt.Continue)
+			return "continue";
+		if (stmt instanceof Stmt.Block) {
+			List<Stmt> statements = ((Stmt.Block) stmt).statements;
+			return describe(statements.get(statements.size() - 1));
+		}
+		return "if";
+	}
+
+	// removes the unread local functions declared in the statements and
+	// the blocks nested in them
+	private static void prune(List<Stmt> statements, Set<Integer> reads) {
+		for (Iterator<Stmt> iterator = statements.iterator(); iterator.hasNext();) {
+			Stmt stmt = iterator.next();
+			if (stmt instanceof Stmt.Function) {
+				Stmt.Function function = (Stmt.Function) stmt;
+				if (function.slot >= 0 && !function.cell && !reads.contains(function.slot)) {
+					Draw.trace("[line " + function.name.line + "] removed unused function " + function.name.lexeme);
+					iterator.remove();
+				}
+			} else {
+				prune(stmt, reads);
+			}
+		}
+	}
+
+	private static void prune(Stmt stmt, Set<Integer> reads) {
+		if (stmt instanceof Stmt.Block) {
+			prune(((Stmt.Block) stmt).statements, reads);
+		} else if (stmt instanceof Stmt.If) {
+			prune(((Stmt.If) stmt).thenBranch, reads);
+			prune(((Stmt.If) stmt).elseBranch, reads);
+		} else if (stmt instanceof Stmt.While) {
+			prune(((Stmt.While) stmt).body, reads);
+		} else if (stmt instanceof Stmt.For) {
+			prune(((Stmt.For) stmt).body, reads);
+		}
+	}
+
+	@Override
+	public Stmt visitFunctionStmt(Stmt.Function stmt) {
+		frame(stmt.function.body);
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitClassStmt(Stmt.Class stmt) {
+		for (Stmt.Function method : stmt.methods)
+			frame(method.function.body);
+		for (Stmt.Function method : stmt.classMethods)
+			frame(method.function.body);
+		return stmt;
+	}
+
+	@Override
+	public Expr visitFunctionExpr(Expr.Function expr) {
+		frame(expr.body);
+		return expr;
+	}
+}
@@ -1,80 +1,43 @@
 package com.drawlang.drawinterpreter;
 
-import java.util.*;
+// the frame of a running function, or of the script's top level blocks
 
 class Environment {
-	// parent environment
-	final Environment enclosing;
-	// string is variable name, object is value associated with
-	// it
-	private final Map<String, Object> values = new HashMap<>();
+	static final Cell[] NO_CELLS = new Cell[0];
 
-	// for global scope
-	Environment() {
-		enclosing = null;
-	}
-
-	// for non-global scope with parent
-	Environment(Environment enclosing) {
-		this.enclosing = enclosing;
-	}
-
-	void define(String name, Object value) {
-		values.put(name, value);
-	}
-
-	Environment ancestor(int distance) {
-		// traverses specified distance up parent chain
-		// and returns environment
-		Environment environment = this;
-		for (int i = 0; i < distance; i++) {
-			environment = environment.enclosing; 
-		}
-		return environment;
-	}
+	// values are stored in the slot the resolver gave each
+	// variable, so no name lookup is needed at runtime
+	final Object[] values;
+	// cells the running function captured when it was made
+	final Cell[] closure;
 
-	Object getAt(int distance, String name) {
-		// returns value from the environment it is defined in
-		return ancestor(distance).values.get(name);
+	Environment(Cell[] closure, int size) {
+		this.closure = closure;
+		this.values = new Object[size];
 	}
 
-	void assignAt(int distance, Token name, Object value) {
-		// assigns value in environment specified
-		ancestor(distance).values.put(name.lexeme, value);
+	void define(int slot, Object value) {
+		values[slot] = value;
 	}
 
-	Object get(Token name) {
-		// checks if variable is defined
-		// if so, look up name and return value associated with it
-		if (values.containsKey(name.lexeme)) {
-			return values.get(name.lexeme);
+	// gathers the cells a closure of function made in this frame captures,
+	// the function's declaration says where each comes from
+	Cell[] capture(Expr.Function function) {
+		int[] captured = function.captured;
+		if (captured.length == 0)
+			return NO_CELLS;
+		Cell[] cells = new Cell[captured.length];
+		for (int i = 0; i < captured.length; i++) {
+			int from = captured[i];
+			cells[i] = from >= 0 ? (Cell) values[from] : closure[-1 - from];
 		}
-
-		// if not in this environment check parent one (this is recursive
-		// and will repeat until global)
-		if (enclosing != null) return enclosing.get(name);
-
-		// if undefined throw an error
-
-		throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+		return cells;
 	}
 
-	void assign(Token name, Object value) {
-		// checks if variable exists
-		if (values.containsKey(name.lexeme)) {
-			// if so update value then return
-			values.put(name.lexeme, value);
-			return;
-		}
-
-		// if not in current scope check parent scope
-		if (enclosing != null) {
-			enclosing.assign(name, value);
-			return;
-		}
-
-		//otherwise raise an error
-
-		throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+	// moves the parameters closures capture into cells, done when a call
+	// has filled them in
+	void box(Expr.Function function) {
+		for (int slot : function.cellParameters)
+			values[slot] = new Cell(values[slot]);
 	}
-}
\ No newline at end of file
+}
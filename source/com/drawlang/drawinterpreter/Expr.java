@@ -3,9 +3,20 @@ package com.drawlang.drawinterpreter;
 import java.util.List;
 
 // these are all for creating a syntax tree of expressions
-// where each expression can contain multiple expressions
+// where each expression can contain multiple expressions. Child
+// expressions can be replaced by passes that run after the resolver,
+// see Folder, Inliner and Fuser
 
 abstract class Expr {
+	// where the resolver found a variable: a slot of the global table, a
+	// slot of the running function's frame, a frame slot holding a cell
+	// that closures share, or one of the cells the running function
+	// captured when it was made
+	static final int GLOBAL = -1;
+	static final int LOCAL = 0;
+	static final int CELL = 1;
+	static final int CAPTURED = 2;
+
 	interface Visitor<R> {
 		R visitArrayLiteralExpr(ArrayLiteral expr);
 
@@ -36,6 +47,18 @@ abstract class Expr {
 		R visitAssignExpr(Assign expr);
 
 		R visitFunctionExpr(Function expr);
+
+		R visitInlineExpr(Inline expr);
+
+		R visitIntrinsicExpr(Intrinsic expr);
+
+		R visitIncrementLocalExpr(IncrementLocal expr);
+
+		R visitCompoundLocalExpr(CompoundLocal expr);
+
+		R visitIndexLocalExpr(IndexLocal expr);
+
+		R visitCompareLocalExpr(CompareLocal expr);
 	}
 
 	static class ArrayLiteral extends Expr {
@@ -62,9 +85,11 @@ abstract class Expr {
 			return visitor.visitBinaryExpr(this);
 		}
 
-		final Expr left;
+		Expr left;
 		final Token operator;
-		final Expr right;
+		Expr right;
+		// operand types the node has specialized on, see Interpreter
+		int state = Interpreter.UNINITIALIZED;
 	}
 
 	static class Call extends Expr {
@@ -78,9 +103,16 @@ abstract class Expr {
 			return visitor.visitCallExpr(this);
 		}
 
-		final Expr callee;
+		Expr callee;
 		final Token paren;
 		final List<Expr> arguments;
+		// methods found for obj.name(...) calls, see Interpreter
+		InlineCache cache = null;
+		// callee whose arity the call last checked
+		Object checked = null;
+		// set by the resolver when the call's value is returned straight
+		// away, so the function making it can be left before the call runs
+		boolean tail = false;
 	}
 
 	static class Get extends Expr {
@@ -94,9 +126,13 @@ abstract class Expr {
 			return visitor.visitGetExpr(this);
 		}
 
-		final Expr object;
+		Expr object;
 		final Token name;
-		final Expr index;
+		Expr index;
+		// receiver type the node has specialized on, see Interpreter
+		int state = Interpreter.UNINITIALIZED;
+		// created once the node specializes on instances
+		InlineCache cache = null;
 	}
 
 	static class Grouping extends Expr {
@@ -108,7 +144,7 @@ abstract class Expr {
 			return visitor.visitGroupingExpr(this);
 		}
 
-		final Expr expression;
+		Expr expression;
 	}
 
 	static class Literal extends Expr {
@@ -134,33 +170,42 @@ abstract class Expr {
 			return visitor.visitLogicalExpr(this);
 		}
 
-		final Expr left;
+		Expr left;
 		final Token operator;
-		final Expr right;
+		Expr right;
 	}
 
 	static class Set extends Expr {
-		Set(Expr object, Token name, Expr index, Expr value) {
+		Set(Expr object, Token name, Expr index, Expr value, Token equals) {
 			this.object = object;
 			this.name = name;
 			this.index = index;
 			this.value = value;
+			this.equals = equals;
 		}
 
 		<R> R accept(Visitor<R> visitor) {
 			return visitor.visitSetExpr(this);
 		}
 
-		final Expr object;
+		Expr object;
 		final Token name;
-		final Expr index;
-		final Expr value;
+		Expr index;
+		Expr value;
+		// = or a compound assignment such as +=, which reads and writes
+		// the element or field with the object and index evaluated once
+		final Token equals;
+		// receiver type the node has specialized on, see Interpreter
+		int state = Interpreter.UNINITIALIZED;
+		// created once the node specializes on instances
+		InlineCache cache = null;
 	}
 
 	static class Super extends Expr {
 		Super(Token keyword, Token method) {
 			this.keyword = keyword;
 			this.method = method;
+			this.self = new This(new Token(TokenType.THIS, "this", null, keyword.line));
 		}
 
 		<R> R accept(Visitor<R> visitor) {
@@ -169,6 +214,11 @@ abstract class Expr {
 
 		final Token keyword;
 		final Token method;
+		// the receiver the method is looked up for, resolved as 'this'
+		final This self;
+		// where 'super' lives and its slot or captured index, set by the resolver
+		int kind = GLOBAL;
+		int slot = -1;
 	}
 
 	static class Ternary extends Expr {
@@ -182,9 +232,9 @@ abstract class Expr {
 			return visitor.visitTernaryExpr(this);
 		}
 
-		final Expr expr;
-		final Expr thenBranch;
-		final Expr elseBranch;
+		Expr expr;
+		Expr thenBranch;
+		Expr elseBranch;
 	}
 
 	static class This extends Expr {
@@ -197,6 +247,9 @@ abstract class Expr {
 		}
 
 		final Token keyword;
+		// where 'this' lives and its slot or captured index, set by the resolver
+		int kind = GLOBAL;
+		int slot = -1;
 	}
 
 	static class Unary extends Expr {
@@ -211,7 +264,7 @@ abstract class Expr {
 		}
 
 		final Token operator;
-		final Expr right;
+		Expr right;
 		final Boolean postfix;
 	}
 
@@ -225,6 +278,15 @@ abstract class Expr {
 		}
 
 		final Token name;
+		// where the variable lives and its slot or captured
+		// index, set by the resolver
+		int kind = GLOBAL;
+		int slot = -1;
+		// value of the const it names when known, the Folder puts it in
+		// place of the variable
+		Literal constant;
+		// set by the Typer when the local only ever holds numbers
+		boolean number = false;
 	}
 
 	static class Assign extends Expr {
@@ -239,8 +301,12 @@ abstract class Expr {
 		}
 
 		final Token name;
-		final Expr value;
+		Expr value;
 		final Token equals;
+		// where the variable lives and its slot or captured
+		// index, set by the resolver
+		int kind = GLOBAL;
+		int slot = -1;
 	}
 
 	static class Function extends Expr {
@@ -255,6 +321,156 @@ abstract class Expr {
 
 		final List<Token> parameters;
 		final List<Stmt> body;
+		// number of slots needed for the parameters and locals
+		int size;
+		// set by the resolver for methods, which take their receiver in
+		// slot 0 and their parameters after it
+		boolean isMethod = false;
+		// where each cell a closure of the function captures comes from when
+		// it is made: a slot of the enclosing frame, or -1 - i for cell i of
+		// the enclosing function's own closure
+		int[] captured = NO_SLOTS;
+		// slots of the parameters, and receiver, that closures made in the
+		// body capture, moved into cells when the function is called
+		int[] cellParameters = NO_SLOTS;
+		// calls made so far and the body compiled to jvm bytecode,
+		// shared by every closure of the function, see JIT
+		int calls = 0;
+		JIT.Code compiled = null;
+
+		static final int[] NO_SLOTS = new int[0];
+	}
+
+	// the body of a small function the Inliner put in place of a call to
+	// it. The arguments are stored in slots of the caller's frame, which
+	// the body reads in place of the parameters
+	static class Inline extends Expr {
+		Inline(Token name, int[] slots, List<Expr> arguments, Expr body) {
+			this.name = name;
+			this.slots = slots;
+			this.arguments = arguments;
+			this.body = body;
+		}
+
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitInlineExpr(this);
+		}
+
+		// name of the function inlined
+		final Token name;
+		final int[] slots;
+		final List<Expr> arguments;
+		Expr body;
+	}
+
+	// a call to a built-in the Intrinsics pass proved the callee of, such
+	// as Math.sin(x) or str(x), run without looking the built-in up
+	static class Intrinsic extends Expr {
+		Intrinsic(Token name, int function, List<Expr> arguments) {
+			this.name = name;
+			this.function = function;
+			this.arguments = arguments;
+		}
+
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitIntrinsicExpr(this);
+		}
+
+		// name the built-in was called by, which its errors report
+		final Token name;
+		// one of the functions listed in Intrinsics
+		final int function;
+		final List<Expr> arguments;
+	}
+
+	// nodes the Fuser puts in place of common shapes of the tree, each
+	// does the work of the nodes it replaces in one visit. The original
+	// node is kept for the compiler and the JIT, which don't fuse
+	abstract static class Fused extends Expr {
+		Fused(Expr original) {
+			this.original = original;
+		}
+
+		final Expr original;
+	}
+
+	// i++, i--, ++i and --i on a local in the frame
+	static class IncrementLocal extends Fused {
+		IncrementLocal(Unary original, int slot) {
+			super(original);
+			this.operator = original.operator;
+			this.slot = slot;
+			this.delta = original.operator.type == TokenType.PLUS_PLUS ? 1 : -1;
+			this.postfix = original.postfix;
+		}
+
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitIncrementLocalExpr(this);
+		}
+
+		final Token operator;
+		final int slot;
+		final double delta;
+		final boolean postfix;
+	}
+
+	// x += value and the other compound assignments to a local in the frame
+	static class CompoundLocal extends Fused {
+		CompoundLocal(Assign original) {
+			super(original);
+			this.equals = original.equals;
+			this.slot = original.slot;
+			this.value = original.value;
+		}
+
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitCompoundLocalExpr(this);
+		}
+
+		final Token equals;
+		final int slot;
+		final Expr value;
+	}
+
+	// object[i] read with i a local in the frame
+	static class IndexLocal extends Fused {
+		IndexLocal(Get original, int index) {
+			super(original);
+			this.object = original.object;
+			this.name = original.name;
+			this.index = index;
+		}
+
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitIndexLocalExpr(this);
+		}
+
+		final Expr object;
+		final Token name;
+		// slot of the index
+		final int index;
+	}
+
+	// v < n, v <= n, v > n and v >= n with v a local in the frame and n
+	// a local or a number
+	static class CompareLocal extends Fused {
+		CompareLocal(Binary original, int left, int right, Double constant) {
+			super(original);
+			this.operator = original.operator;
+			this.left = left;
+			this.right = right;
+			this.constant = constant;
+		}
+
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitCompareLocalExpr(this);
+		}
+
+		final Token operator;
+		final int left;
+		// slot of the right operand, or -1 when it is the constant
+		final int right;
+		final Double constant;
 	}
 
 	abstract <R> R accept(Visitor<R> visitor);
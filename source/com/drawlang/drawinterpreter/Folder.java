@@ -0,0 +1,150 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// folds expressions whose operands are all constants into literals, puts
+// the values of consts in place of their uses and drops the branches of
+// ifs and loops whose conditions are constant. Operations that would
+// raise an error are left for the interpreter to report at runtime
+
+class Folder extends Rewriter {
+
+	static void fold(List<Stmt> statements) {
+		new Folder().rewrite(statements);
+	}
+
+	static Expr fold(Expr expr) {
+		return new Folder().rewrite(expr);
+	}
+
+	// literals that evaluate to themselves, array literals build a
+	// new array each time
+	static boolean isConstant(Expr expr) {
+		if (!(expr instanceof Expr.Literal))
+			return false;
+		Object value = ((Expr.Literal) expr).value;
+		return value == null || value instanceof Double || value instanceof Boolean || value instanceof DrawString;
+	}
+
+	private static Object value(Expr expr) {
+		return ((Expr.Literal) expr).value;
+	}
+
+	@Override
+	public Stmt visitIfStmt(Stmt.If stmt) {
+		super.visitIfStmt(stmt);
+		if (!isConstant(stmt.condition))
+			return stmt;
+		if (Interpreter.isTruthy(value(stmt.condition)))
+			return stmt.thenBranch;
+		return stmt.elseBranch != null ? stmt.elseBranch : new Stmt.Block(new ArrayList<Stmt>());
+	}
+
+	@Override
+	public Stmt visitWhileStmt(Stmt.While stmt) {
+		super.visitWhileStmt(stmt);
+		// a loop that never runs
+		if (isConstant(stmt.condition) && !Interpreter.isTruthy(value(stmt.condition)))
+			return new Stmt.Block(new ArrayList<Stmt>());
+		return stmt;
+	}
+
+	@Override
+	public Expr visitBinaryExpr(Expr.Binary expr) {
+		super.visitBinaryExpr(expr);
+		if (!isConstant(expr.left) || !isConstant(expr.right))
+			return expr;
+
+		Object left = value(expr.left);
+		Object right = value(expr.right);
+		switch (expr.operator.type) {
+			case EQUAL_EQUAL:
+				return new Expr.Literal(Interpreter.isEqual(left, right));
+			case BANG_EQUAL:
+				return new Expr.Literal(!Interpreter.isEqual(left, right));
+			case PLUS:
+				// numbers or a string with anything, the rest is an error
+				if ((left instanceof Double && right instanceof Double)
+						|| left instanceof DrawString || right instanceof DrawString)
+					return new Expr.Literal(Interpreter.add(expr.operator, left, right));
+				return expr;
+			default:
+				break;
+		}
+
+		if (!(left instanceof Double && right instanceof Double))
+			return expr;
+		double a = (double) left;
+		double b = (double) right;
+		switch (expr.operator.type) {
+			case GREATER:
+				return new Expr.Literal(a > b);
+			case GREATER_EQUAL:
+				return new Expr.Literal(a >= b);
+			case LESS:
+				return new Expr.Literal(a < b);
+			case LESS_EQUAL:
+				return new Expr.Literal(a <= b);
+			case MINUS:
+				return new Expr.Literal(a - b);
+			case SLASH:
+				return new Expr.Literal(a / b);
+			case STAR:
+				return new Expr.Literal(a * b);
+			case MODULOS:
+				return new Expr.Literal(a % b);
+			case STAR_STAR:
+				return new Expr.Literal(Math.pow(a, b));
+			default:
+				return expr;
+		}
+	}
+
+	@Override
+	public Expr visitGroupingExpr(Expr.Grouping expr) {
+		super.visitGroupingExpr(expr);
+		return isConstant(expr.expression) ? expr.expression : expr;
+	}
+
+	@Override
+	public Expr visitLogicalExpr(Expr.Logical expr) {
+		super.visitLogicalExpr(expr);
+		if (!isConstant(expr.left))
+			return expr;
+		// the left value when it short circuits, otherwise the right one
+		boolean truthy = Interpreter.isTruthy(value(expr.left));
+		if (expr.operator.type == TokenType.OR)
+			return truthy ? expr.left : expr.right;
+		return truthy ? expr.right : expr.left;
+	}
+
+	@Override
+	public Expr visitTernaryExpr(Expr.Ternary expr) {
+		super.visitTernaryExpr(expr);
+		if (!isConstant(expr.expr))
+			return expr;
+		return Interpreter.isTruthy(value(expr.expr)) ? expr.thenBranch : expr.elseBranch;
+	}
+
+	@Override
+	public Expr visitUnaryExpr(Expr.Unary expr) {
+		super.visitUnaryExpr(expr);
+		if (!isConstant(expr.right))
+			return expr;
+		Object right = value(expr.right);
+		if (expr.operator.type == TokenType.BANG)
+			return new Expr.Literal(!Interpreter.isTruthy(right));
+		if (expr.operator.type == TokenType.MINUS && right instanceof Double)
+			return new Expr.Literal(-(double) right);
+		return expr;
+	}
+
+	@Override
+	public Expr visitVariableExpr(Expr.Variable expr) {
+		// the resolver found a const with a constant value
+		if (expr.constant != null)
+			return new Expr.Literal(expr.constant.value);
+		return expr;
+	}
+}
@@ -0,0 +1,98 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.List;
+
+// rewrites common shapes of a resolved tree into fused nodes that the
+// tree walking interpreter runs in one visit, such as i++ on a local or
+// a[i] with i a local. Runs after the resolver as the fused nodes use the
+// slots it assigned, turned off with -Ddraw.fuse=false
+
+class Fuser extends Rewriter {
+
+	static void fuse(List<Stmt> statements) {
+		new Fuser().rewrite(statements);
+	}
+
+	private static boolean isLocal(Expr expr) {
+		return expr instanceof Expr.Variable && ((Expr.Variable) expr).kind == Expr.LOCAL;
+	}
+
+	private static boolean isNumber(Expr expr) {
+		return expr instanceof Expr.Literal && ((Expr.Literal) expr).value instanceof Double;
+	}
+
+	@Override
+	public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+		super.visitExpressionStmt(stmt);
+		// obj.name(...) whose value is dropped
+		if (stmt.expression instanceof Expr.Call) {
+			Expr.Call call = (Expr.Call) stmt.expression;
+			if (call.callee instanceof Expr.Get && ((Expr.Get) call.callee).index == null)
+				return new Stmt.MethodCall(call);
+		}
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitForStmt(Stmt.For stmt) {
+		// a counted loop tests its condition and steps its counter itself
+		if (stmt.counted) {
+			stmt.initializer = rewrite(stmt.initializer);
+			stmt.body = rewrite(stmt.body);
+			return stmt;
+		}
+		return super.visitForStmt(stmt);
+	}
+
+	@Override
+	public Expr visitBinaryExpr(Expr.Binary expr) {
+		super.visitBinaryExpr(expr);
+		switch (expr.operator.type) {
+			case LESS:
+			case LESS_EQUAL:
+			case GREATER:
+			case GREATER_EQUAL:
+				break;
+			default:
+				return expr;
+		}
+		if (!isLocal(expr.left))
+			return expr;
+		int left = ((Expr.Variable) expr.left).slot;
+		if (isLocal(expr.right))
+			return new Expr.CompareLocal(expr, left, ((Expr.Variable) expr.right).slot, null);
+		if (isNumber(expr.right))
+			return new Expr.CompareLocal(expr, left, -1, (Double) ((Expr.Literal) expr.right).value);
+		return expr;
+	}
+
+	@Override
+	public Expr visitGetExpr(Expr.Get expr) {
+		super.visitGetExpr(expr);
+		if (isLocal(expr.index))
+			return new Expr.IndexLocal(expr, ((Expr.Variable) expr.index).slot);
+		return expr;
+	}
+
+	@Override
+	public Expr visitUnaryExpr(Expr.Unary expr) {
+		TokenType operator = expr.operator.type;
+		// the element or field ++ and -- update stays a Get
+		if ((operator == TokenType.PLUS_PLUS || operator == TokenType.MINUS_MINUS) && expr.right instanceof Expr.Get) {
+			super.visitGetExpr((Expr.Get) expr.right);
+			return expr;
+		}
+		super.visitUnaryExpr(expr);
+		if ((operator == TokenType.PLUS_PLUS || operator == TokenType.MINUS_MINUS) && isLocal(expr.right))
+			return new Expr.IncrementLocal(expr, ((Expr.Variable) expr.right).slot);
+		return expr;
+	}
+
+	@Override
+	public Expr visitAssignExpr(Expr.Assign expr) {
+		super.visitAssignExpr(expr);
+		if (expr.equals.type != TokenType.EQUAL && expr.kind == Expr.LOCAL)
+			return new Expr.CompoundLocal(expr);
+		return expr;
+	}
+}
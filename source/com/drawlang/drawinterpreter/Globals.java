@@ -0,0 +1,82 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.*;
+
+// the global variables of a run. The resolver gives each global name a
+// slot in the table, so reading or assigning one is an array access
+// rather than a lookup by name. A run's table starts as a copy of the
+// prelude, which the built-in functions are defined in once. Names are
+// known by their symbols
+
+class Globals {
+	// value of a slot no declaration has defined yet
+	private static final Object UNDEFINED = new Object();
+
+	// slots indexed by symbol, -1 where the name has none
+	private int[] slots;
+	private Object[] values;
+	private int size;
+
+	Globals() {
+		this(new int[0], new Object[16], 0);
+	}
+
+	private Globals(int[] slots, Object[] values, int size) {
+		this.slots = slots;
+		this.values = values;
+		this.size = size;
+	}
+
+	// a table holding the same globals, which is cheap to make because
+	// only the slots and values are copied
+	Globals copy() {
+		return new Globals(Arrays.copyOf(slots, slots.length), Arrays.copyOf(values, values.length), size);
+	}
+
+	// returns the slot of the name, giving it the next free one the
+	// first time
+	int slot(int symbol) {
+		if (symbol < slots.length && slots[symbol] >= 0)
+			return slots[symbol];
+		if (symbol >= slots.length) {
+			int length = slots.length;
+			slots = Arrays.copyOf(slots, Math.max(symbol + 1, length * 2));
+			Arrays.fill(slots, length, slots.length, -1);
+		}
+		if (size == values.length)
+			values = Arrays.copyOf(values, size * 2);
+		values[size] = UNDEFINED;
+		slots[symbol] = size;
+		return size++;
+	}
+
+	Object get(Token name, int slot) {
+		Object value = values[slot];
+		if (value == UNDEFINED)
+			throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+		return value;
+	}
+
+	// reads a global by name, for the slow paths that don't have its slot
+	Object get(int symbol) {
+		int slot = slot(symbol);
+		return values[slot];
+	}
+
+	void assign(Token name, int slot, Object value) {
+		if (values[slot] == UNDEFINED)
+			throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+		values[slot] = value;
+	}
+
+	// declarations run once, so they find their slot by name
+	void define(int symbol, Object value) {
+		int slot = slot(symbol);
+		values[slot] = value;
+	}
+
+	// defines a built-in
+	void define(String name, Object value) {
+		define(Symbols.intern(name), value);
+	}
+}
@@ -0,0 +1,129 @@
+package com.drawlang.drawinterpreter;
+
+// remembers what a property access found for the shapes of the
+// receivers it has seen, so a repeated obj.name skips the field and
+// method lookups. Holds up to MAX_ENTRIES shapes, a site that sees more
+// goes megamorphic and does the full lookup from then on
+
+class InlineCache {
+	static final int MAX_ENTRIES = 4;
+
+	private final Shape[] shapes = new Shape[MAX_ENTRIES];
+	// slot of the field for each shape, -1 when the name is a method
+	private final int[] indices = new int[MAX_ENTRIES];
+	// unbound method found on the shape's class
+	private final DrawFunction[] methods = new DrawFunction[MAX_ENTRIES];
+	// shape an instance moves to when the set adds the field
+	private final Shape[] transitions = new Shape[MAX_ENTRIES];
+	private int count = 0;
+	private boolean megamorphic = false;
+	// method of a native type the site last called
+	private NativeTable<?> table = null;
+	private NativeTable.Entry<?> entry = null;
+
+	Object get(DrawInstance instance, Token name) {
+		Shape shape = instance.shape;
+		for (int i = 0; i < count; i++) {
+			if (shapes[i] == shape)
+				return indices[i] >= 0 ? instance.slots[indices[i]] : methods[i].bind(instance);
+		}
+
+		if (cacheable(shape)) {
+			int index = shape.indexOf(name.symbol);
+			DrawFunction method = index < 0 ? shape.drawClass.lookUpMethod(name.symbol) : null;
+			if (index >= 0 || method != null)
+				add(shape, index, method, null);
+		}
+		return instance.get(name);
+	}
+
+	// finds the unbound method obj.name(...) calls, or null when the
+	// name is a field or the receiver can't be cached
+	DrawFunction method(DrawInstance instance, Token name) {
+		Shape shape = instance.shape;
+		for (int i = 0; i < count; i++) {
+			if (shapes[i] == shape)
+				return methods[i];
+		}
+
+		if (!cacheable(shape))
+			return null;
+		int index = shape.indexOf(name.symbol);
+		DrawFunction method = index < 0 ? shape.drawClass.lookUpMethod(name.symbol) : null;
+		if (index >= 0 || method != null)
+			add(shape, index, method, null);
+		return method;
+	}
+
+	// finds the built-in method obj.name(...) calls on a native, or null
+	// when the type has no such method. Looked up again only when the
+	// site sees a different native type
+	NativeTable.Entry<?> nativeMethod(NativeTable<?> table, Token name) {
+		if (table != this.table) {
+			this.table = table;
+			entry = table.lookUp(name.symbol);
+		}
+		return entry;
+	}
+
+	void set(DrawInstance instance, Token name, Object value) {
+		Shape shape = instance.shape;
+		for (int i = 0; i < count; i++) {
+			if (shapes[i] == shape) {
+				if (transitions[i] == null)
+					instance.slots[indices[i]] = value;
+				else
+					instance.append(transitions[i], value);
+				return;
+			}
+		}
+
+		instance.set(name, value);
+		if (cacheable(shape)) {
+			int index = shape.indexOf(name.symbol);
+			if (index >= 0) {
+				add(shape, index, null, null);
+			} else if (instance.shape != Shape.DICTIONARY) {
+				// the set added a field and moved the instance along a transition
+				add(shape, shape.size, null, instance.shape);
+			}
+		}
+	}
+
+	// finds the slot of the field obj.name, or -1 when the name isn't
+	// a field in the instance's slots. Compound assignments and ++ on a
+	// field read and write the slot directly
+	int field(DrawInstance instance, Token name) {
+		Shape shape = instance.shape;
+		for (int i = 0; i < count; i++) {
+			if (shapes[i] == shape)
+				return transitions[i] == null ? indices[i] : -1;
+		}
+
+		if (!cacheable(shape))
+			return -1;
+		int index = shape.indexOf(name.symbol);
+		if (index >= 0)
+			add(shape, index, null, null);
+		return index;
+	}
+
+	// instances without a class are natives with their own properties,
+	// and dictionary mode instances of any class share one shape
+	private boolean cacheable(Shape shape) {
+		return !megamorphic && shape.drawClass != null;
+	}
+
+	private void add(Shape shape, int index, DrawFunction method, Shape transition) {
+		if (count == MAX_ENTRIES) {
+			megamorphic = true;
+			count = 0;
+			return;
+		}
+		shapes[count] = shape;
+		indices[count] = index;
+		methods[count] = method;
+		transitions[count] = transition;
+		count++;
+	}
+}
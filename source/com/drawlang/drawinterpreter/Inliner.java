@@ -0,0 +1,372 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.*;
+
+// puts the bodies of small functions in place of the calls to them, so
+// helpers such as lerp or clamp called per pixel don't pay for a call
+// each time. A function is inlined when its body is a single return of
+// a small expression, it doesn't call itself and nothing assigns its
+// name: a global function declared once, or a local function called in
+// the frame that declares it. A global function is only inlined in the
+// top level statements after its declaration, including the bodies of
+// functions they declare, as a call before it has run fails. Runs after
+// the Folder, turned off with -Ddraw.inline=false
+
+class Inliner extends Rewriter {
+	// most nodes the expression an inlined function returns may have
+	private static final int MAX_SIZE = 32;
+
+	// global functions that can be inlined, by name
+	private final Map<String, Stmt.Function> globals = new HashMap<>();
+	// index of each global function's declaration in the script's
+	// statements, and of the statement being rewritten
+	private final Map<Stmt.Function, Integer> positions = new HashMap<>();
+	private int statement = 0;
+	// local functions of the frame being rewritten that can be inlined,
+	// by slot
+	private Map<Integer, Stmt.Function> locals = new HashMap<>();
+	// the expression each function returns, copied before any inlining
+	// is done inside it
+	private final Map<Stmt.Function, Expr> bodies = new HashMap<>();
+	// functions being inlined, which aren't inlined again inside
+	// their own bodies
+	private final Set<Stmt.Function> inlining = new HashSet<>();
+	// function whose frame is being rewritten, null for the script's
+	private Expr.Function function = null;
+	private int scriptSize;
+
+	private Inliner(int scriptSize) {
+		this.scriptSize = scriptSize;
+	}
+
+	// returns the size of the script's frame, which grows by the slots
+	// the arguments of calls inlined in the top level take
+	static int inline(List<Stmt> statements, int size) {
+		Inliner inliner = new Inliner(size);
+		inliner.findGlobals(statements);
+		inliner.frame(null, statements);
+		return inliner.scriptSize;
+	}
+
+	private void findGlobals(List<Stmt> statements) {
+		Set<String> assigned = Scan.of(statements).globals;
+		Map<String, Integer> declarations = new HashMap<>();
+		for (Stmt statement : statements) {
+			Token name = null;
+			if (statement instanceof Stmt.Var)
+				name = ((Stmt.Var) statement).name;
+			else if (statement instanceof Stmt.Function)
+				name = ((Stmt.Function) statement).name;
+			else if (statement instanceof Stmt.Class)
+				name = ((Stmt.Class) statement).name;
+			if (name != null)
+				declarations.merge(name.lexeme, 1, Integer::sum);
+		}
+
+		for (int i = 0; i < statements.size(); i++) {
+			if (!(statements.get(i) instanceof Stmt.Function))
+				continue;
+			Stmt.Function function = (Stmt.Function) statements.get(i);
+			String name = function.name.lexeme;
+			if (declarations.get(name) == 1 && !assigned.contains(name) && inlinable(function)) {
+				globals.put(name, function);
+				positions.put(function, i);
+			}
+		}
+
+		// functions that call each other are left as calls
+		Set<Stmt.Function> recursive = new HashSet<>();
+		for (Stmt.Function function : globals.values()) {
+			if (reaches(function, function, new HashSet<>()))
+				recursive.add(function);
+		}
+		globals.values().removeAll(recursive);
+	}
+
+	// whether the function calls target, directly or through other
+	// functions that can be inlined
+	private boolean reaches(Stmt.Function function, Stmt.Function target, Set<Stmt.Function> visited) {
+		if (!visited.add(function))
+			return false;
+		for (String name : Scan.of(function.function.body).names) {
+			Stmt.Function callee = globals.get(name);
+			if (callee == target || (callee != null && reaches(callee, target, visited)))
+				return true;
+		}
+		return false;
+	}
+
+	// rewrites the body of a function, or the script, with the local
+	// functions it declares
+	private void frame(Expr.Function function, List<Stmt> body) {
+		Expr.Function enclosingFunction = this.function;
+		Map<Integer, Stmt.Function> enclosingLocals = locals;
+		this.function = function;
+		locals = new HashMap<>();
+
+		Scan scan = Scan.of(body);
+		for (Stmt.Function local : scan.functions) {
+			if (!local.cell && !scan.assigned.contains(local.slot) && inlinable(local))
+				locals.put(local.slot, local);
+		}
+		if (function == null) {
+			for (statement = 0; statement < body.size(); statement++)
+				body.set(statement, rewrite(body.get(statement)));
+		} else {
+			rewrite(body);
+		}
+
+		this.function = enclosingFunction;
+		locals = enclosingLocals;
+	}
+
+	// checks the function is small enough and keeps a copy of the
+	// expression it returns
+	private boolean inlinable(Stmt.Function stmt) {
+		List<Stmt> body = stmt.function.body;
+		if (body.size() != 1 || !(body.get(0) instanceof Stmt.Return))
+			return false;
+		Expr value = ((Stmt.Return) body.get(0)).value;
+		int size = size(value, stmt);
+		if (value == null || size < 0 || size > MAX_SIZE)
+			return false;
+
+		Expr[] parameters = new Expr[stmt.function.parameters.size()];
+		for (int i = 0; i < parameters.length; i++)
+			parameters[i] = variable(stmt.function.parameters.get(i), Expr.LOCAL, i);
+		bodies.put(stmt, copy(value, parameters, Expr.Function.NO_SLOTS));
+		return true;
+	}
+
+	@Override
+	public Stmt visitFunctionStmt(Stmt.Function stmt) {
+		frame(stmt.function, stmt.function.body);
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitClassStmt(Stmt.Class stmt) {
+		for (Stmt.Function method : stmt.methods)
+			frame(method.function, method.function.body);
+		for (Stmt.Function method : stmt.classMethods)
+			frame(method.function, method.function.body);
+		return stmt;
+	}
+
+	@Override
+	public Expr visitFunctionExpr(Expr.Function expr) {
+		frame(expr, expr.body);
+		return expr;
+	}
+
+	@Override
+	public Expr visitCallExpr(Expr.Call expr) {
+		super.visitCallExpr(expr);
+		Stmt.Function callee = callee(expr.callee);
+		if (callee == null || inlining.contains(callee)
+				|| expr.arguments.size() != callee.function.parameters.size())
+			return expr;
+
+		// constants and, when every argument is one or a local, locals
+		// are read straight from the call, the body can't assign them.
+		// Other arguments are stored in new slots of the frame first so
+		// they are evaluated once and in order
+		boolean simple = true;
+		for (Expr argument : expr.arguments) {
+			if (!Folder.isConstant(argument) && !isLocal(argument))
+				simple = false;
+		}
+		List<Token> names = callee.function.parameters;
+		Expr[] parameters = new Expr[names.size()];
+		List<Integer> slots = new ArrayList<>();
+		List<Expr> arguments = new ArrayList<>();
+		for (int i = 0; i < parameters.length; i++) {
+			Expr argument = expr.arguments.get(i);
+			if (Folder.isConstant(argument) || (simple && isLocal(argument))) {
+				parameters[i] = argument;
+			} else {
+				int slot = function != null ? function.size++ : scriptSize++;
+				parameters[i] = variable(names.get(i), Expr.LOCAL, slot);
+				slots.add(slot);
+				arguments.add(argument);
+			}
+		}
+
+		// folded first so constant arguments reach the calls in the body
+		Expr body = Folder.fold(copy(bodies.get(callee), parameters, callee.function.captured));
+		inlining.add(callee);
+		body = rewrite(body);
+		inlining.remove(callee);
+		Draw.trace("[line " + expr.paren.line + "] inlined " + callee.name.lexeme);
+
+		if (slots.isEmpty())
+			return body;
+		int[] array = new int[slots.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = slots.get(i);
+		return new Expr.Inline(callee.name, array, arguments, body);
+	}
+
+	// the function a call is known to call, or null
+	private Stmt.Function callee(Expr callee) {
+		if (!(callee instanceof Expr.Variable))
+			return null;
+		Expr.Variable variable = (Expr.Variable) callee;
+		if (variable.kind == Expr.GLOBAL) {
+			Stmt.Function function = globals.get(variable.name.lexeme);
+			return function != null && positions.get(function) < statement ? function : null;
+		}
+		if (variable.kind == Expr.LOCAL)
+			return locals.get(variable.slot);
+		return null;
+	}
+
+	private static boolean isLocal(Expr expr) {
+		return expr instanceof Expr.Variable && ((Expr.Variable) expr).kind == Expr.LOCAL;
+	}
+
+	private static Expr.Variable variable(Token name, int kind, int slot) {
+		Expr.Variable variable = new Expr.Variable(name);
+		variable.kind = kind;
+		variable.slot = slot;
+		return variable;
+	}
+
+	// counts the nodes of an expression, or returns -1 if it has one
+	// the Inliner can't copy or calls the function it is in
+	private static int size(Expr expr, Stmt.Function function) {
+		if (expr == null)
+			return 0;
+		if (expr instanceof Expr.Literal)
+			return 1;
+		if (expr instanceof Expr.Variable) {
+			Expr.Variable variable = (Expr.Variable) expr;
+			switch (variable.kind) {
+				case Expr.GLOBAL:
+					return variable.name.lexeme.equals(function.name.lexeme) ? -1 : 1;
+				case Expr.LOCAL:
+					return variable.slot < function.function.parameters.size() ? 1 : -1;
+				case Expr.CAPTURED:
+					return 1;
+				default:
+					return -1;
+			}
+		}
+		if (expr instanceof Expr.Binary) {
+			Expr.Binary binary = (Expr.Binary) expr;
+			return add(size(binary.left, function), size(binary.right, function));
+		}
+		if (expr instanceof Expr.Unary) {
+			Expr.Unary unary = (Expr.Unary) expr;
+			TokenType operator = unary.operator.type;
+			if (operator == TokenType.PLUS_PLUS || operator == TokenType.MINUS_MINUS)
+				return -1;
+			return add(0, size(unary.right, function));
+		}
+		if (expr instanceof Expr.Grouping)
+			return size(((Expr.Grouping) expr).expression, function);
+		if (expr instanceof Expr.Logical) {
+			Expr.Logical logical = (Expr.Logical) expr;
+			return add(size(logical.left, function), size(logical.right, function));
+		}
+		if (expr instanceof Expr.Ternary) {
+			Expr.Ternary ternary = (Expr.Ternary) expr;
+			return add(size(ternary.expr, function),
+					add(size(ternary.thenBranch, function), size(ternary.elseBranch, function)));
+		}
+		if (expr instanceof Expr.Get) {
+			Expr.Get get = (Expr.Get) expr;
+			return add(size(get.object, function), size(get.index, function));
+		}
+		if (expr instanceof Expr.Call) {
+			Expr.Call call = (Expr.Call) expr;
+			int size = size(call.callee, function);
+			for (Expr argument : call.arguments)
+				size = add(size, size(argument, function));
+			return size;
+		}
+		if (expr instanceof Expr.ArrayLiteral) {
+			int size = 0;
+			for (Expr value : ((Expr.ArrayLiteral) expr).values)
+				size = add(size, size(value, function));
+			return add(0, size);
+		}
+		return -1;
+	}
+
+	// the size of a node with children of the sizes given
+	private static int add(int left, int right) {
+		return left < 0 || right < 0 ? -1 : left + right + 1;
+	}
+
+	// copies an expression size accepted into the frame of a call to its
+	// function, with each parameter replaced by the expression given
+	// and the cells the function captures read from where it got them
+	private static Expr copy(Expr expr, Expr[] parameters, int[] captured) {
+		if (expr == null)
+			return null;
+		if (expr instanceof Expr.Literal)
+			return new Expr.Literal(((Expr.Literal) expr).value);
+		if (expr instanceof Expr.Variable) {
+			Expr.Variable variable = (Expr.Variable) expr;
+			switch (variable.kind) {
+				case Expr.LOCAL: {
+					Expr parameter = parameters[variable.slot];
+					if (parameter instanceof Expr.Literal)
+						return new Expr.Literal(((Expr.Literal) parameter).value);
+					Expr.Variable local = (Expr.Variable) parameter;
+					return variable(local.name, local.kind, local.slot);
+				}
+				case Expr.CAPTURED: {
+					if (captured.length == 0)
+						return variable(variable.name, Expr.CAPTURED, variable.slot);
+					int source = captured[variable.slot];
+					return source >= 0 ? variable(variable.name, Expr.CELL, source)
+							: variable(variable.name, Expr.CAPTURED, -1 - source);
+				}
+				default:
+					return variable(variable.name, Expr.GLOBAL, variable.slot);
+			}
+		}
+		if (expr instanceof Expr.Binary) {
+			Expr.Binary binary = (Expr.Binary) expr;
+			return new Expr.Binary(copy(binary.left, parameters, captured), binary.operator,
+					copy(binary.right, parameters, captured));
+		}
+		if (expr instanceof Expr.Unary) {
+			Expr.Unary unary = (Expr.Unary) expr;
+			return new Expr.Unary(unary.operator, copy(unary.right, parameters, captured), unary.postfix);
+		}
+		if (expr instanceof Expr.Grouping)
+			return new Expr.Grouping(copy(((Expr.Grouping) expr).expression, parameters, captured));
+		if (expr instanceof Expr.Logical) {
+			Expr.Logical logical = (Expr.Logical) expr;
+			return new Expr.Logical(copy(logical.left, parameters, captured), logical.operator,
+					copy(logical.right, parameters, captured));
+		}
+		if (expr instanceof Expr.Ternary) {
+			Expr.Ternary ternary = (Expr.Ternary) expr;
+			return new Expr.Ternary(copy(ternary.expr, parameters, captured),
+					copy(ternary.thenBranch, parameters, captured), copy(ternary.elseBranch, parameters, captured));
+		}
+		if (expr instanceof Expr.Get) {
+			Expr.Get get = (Expr.Get) expr;
+			return new Expr.Get(copy(get.object, parameters, captured), get.name,
+					copy(get.index, parameters, captured));
+		}
+		if (expr instanceof Expr.Call) {
+			Expr.Call call = (Expr.Call) expr;
+			return new Expr.Call(copy(call.callee, parameters, captured), call.paren,
+					copyAll(call.arguments, parameters, captured));
+		}
+		Expr.ArrayLiteral array = (Expr.ArrayLiteral) expr;
+		return new Expr.ArrayLiteral(copyAll(array.values, parameters, captured));
+	}
+
+	private static List<Expr> copyAll(List<Expr> expressions, Expr[] parameters, int[] captured) {
+		List<Expr> copies = new ArrayList<>();
+		for (Expr expr : expressions)
+			copies.add(copy(expr, parameters, captured));
+		return copies;
+	}
+}
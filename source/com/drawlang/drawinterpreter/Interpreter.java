@@ -1,7 +1,6 @@
 package com.drawlang.drawinterpreter;
 
 import static com.drawlang.drawinterpreter.TokenType.*;
-import com.drawlang.gui.*;
 
 import javafx.scene.paint.*;
 import javafx.scene.image.*;
@@ -14,152 +13,173 @@ import javax.imageio.ImageIO;
 import java.util.*;
 import java.io.*;
 
-public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
+public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Object> {
 
+	// the built-in functions, made once and copied into each run's globals
+	private static final Globals PRELUDE = new Globals();
 	// allows interpreter to define things in global scope
-	final Environment globals = new Environment();
-	private Environment environment = globals;
-	// associates expressions with distance from current scope
-	// and scope where variable is defined
-	private final Map<Expr, Integer> locals = new HashMap<>();
-
-	private DrawCanvas canvas;
-	private DrawMath math;
-
-	Interpreter(DrawCanvas canvas) {
-		this.canvas = canvas;
-		canvas.clear();
-		math = new DrawMath();
-
-		globals.define("clock", new DrawCallable() {
+	final Globals globals;
+	// frame of the running function, or of the script's top level blocks
+	private Environment environment = null;
+
+	private final DrawCanvas canvas;
+
+	// states of self-specializing nodes. A node starts uninitialized, takes
+	// a fast path for the types it sees on its first evaluation and becomes
+	// generic for good once any other type turns up
+	static final int UNINITIALIZED = 0;
+	static final int NUMBER = 1;
+	static final int STRING = 2;
+	static final int ARRAY = 3;
+	static final int INSTANCE = 4;
+	static final int GENERIC = 5;
+	// operands the Typer proved are always numbers, run without checks
+	static final int PROVEN = 6;
+
+	// statements complete normally by returning null, or with one of
+	// these signals that enclosing loops and calls act on. A return
+	// leaves its value in returnValue
+	static final Object BREAK = new Object();
+	static final Object CONTINUE = new Object();
+	static final Object RETURN = new Object();
+	private Object returnValue = null;
+	// value of a call in tail position, the callee and its arguments are
+	// left here for the function returning it to run in its own loop
+	static final Object TAIL_CALL = new Object();
+	DrawFunction tailFunction = null;
+	DrawInstance tailReceiver = null;
+	Object[] tailArguments = null;
+
+	static {
+		PRELUDE.define("clock", new DrawCallable() {
 			@Override
 			public int arity() {
 				return 0;
 			}
 
 			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
+			public Object call(Interpreter interpreter, Object[] arguments) {
 				return (double) System.currentTimeMillis();
 			}
 		});
 
-		globals.define("str", new DrawCallable() {
+		PRELUDE.define("str", new DrawCallable() {
 			@Override
 			public int arity() {
 				return 1;
 			}
 
 			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
-				return new DrawString(stringify(arguments.get(0)));
+			public Object call(Interpreter interpreter, Object[] arguments) {
+				return new DrawString(stringify(arguments[0]));
 			}
 		});
 
-		globals.define("print", new DrawCallable() {
+		PRELUDE.define("print", new DrawCallable() {
 			@Override
 			public int arity() {
 				return 1;
 			}
 
 			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
-				Main.getConsole().print(stringify(arguments.get(0)));
+			public Object call(Interpreter interpreter, Object[] arguments) {
+				Draw.print(stringify(arguments[0]));
 				return null;
 			}
 		});
 
-		globals.define("println", new DrawCallable() {
+		PRELUDE.define("println", new DrawCallable() {
 			@Override
 			public int arity() {
 				return 1;
 			}
 
 			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
-				Main.getConsole().println(stringify(arguments.get(0)));
+			public Object call(Interpreter interpreter, Object[] arguments) {
+				Draw.println(stringify(arguments[0]));
 				return null;
 			}
 		});
 
-		globals.define("Array", new DrawCallable() {
+		PRELUDE.define("Array", new DrawCallable() {
 			@Override
 			public int arity() {
 				return 1;
 			}
 
 			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
-				int size = (int) (double) arguments.get(0);
+			public Object call(Interpreter interpreter, Object[] arguments) {
+				int size = (int) (double) arguments[0];
 				return new DrawArray(size);
 			}
 		});
 
-		globals.define("getCanvas", new DrawCallable() {
+		PRELUDE.define("getCanvas", new DrawCallable() {
 			@Override
 			public int arity() {
 				return 0;
 			}
 
 			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
-				return canvas;
+			public Object call(Interpreter interpreter, Object[] arguments) {
+				return interpreter.canvas;
 			}
 		});
 
-		globals.define("Canvas", new DrawCallable() {
+		PRELUDE.define("Canvas", new DrawCallable() {
 			@Override
 			public int arity() {
 				return 2;
 			}
 
 			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
-				return new DrawCanvas(new Canvas((int) (double) arguments.get(0), (int) (double) arguments.get(1)));
+			public Object call(Interpreter interpreter, Object[] arguments) {
+				return new DrawCanvas(new Canvas((int) (double) arguments[0], (int) (double) arguments[1]));
 			}
 		});
 
-		globals.define("Color", new DrawCallable() {
+		PRELUDE.define("Color", new DrawCallable() {
 			@Override
 			public int arity() {
 				return 4;
 			}
 
 			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
-				return new DrawColor(new Color((double) arguments.get(0) / 255f, (double) arguments.get(1) / 255f,
-						(double) arguments.get(2) / 255f, (double) arguments.get(3) / 255f));
+			public Object call(Interpreter interpreter, Object[] arguments) {
+				return new DrawColor(new Color((double) arguments[0] / 255f, (double) arguments[1] / 255f,
+						(double) arguments[2] / 255f, (double) arguments[3] / 255f));
 			}
 		});
 
-		globals.define("loadImage", new DrawCallable() {
+		PRELUDE.define("loadImage", new DrawCallable() {
 			@Override
 			public int arity() {
 				return 1;
 			}
 
 			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
-				String path = ((DrawString) arguments.get(0)).toString();
+			public Object call(Interpreter interpreter, Object[] arguments) {
+				String path = ((DrawString) arguments[0]).toString();
 				Image image = new Image(new File(path).toURI().toString());
 				return new DrawImage(
 						new WritableImage(image.getPixelReader(), (int) image.getWidth(), (int) image.getHeight()));
 			}
 		});
 
-		globals.define("saveImage", new DrawCallable() {
+		PRELUDE.define("saveImage", new DrawCallable() {
 			@Override
 			public int arity() {
 				return 2;
 			}
 
 			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
+			public Object call(Interpreter interpreter, Object[] arguments) {
 				// loads the image from the first argument, converts it to a java awt buffered
 				// image
-				String path = ((DrawString) arguments.get(1)).toString();
+				String path = ((DrawString) arguments[1]).toString();
 				File saveFile = new File((String) path);
 				try {
-					ImageIO.write(SwingFXUtils.fromFXImage(((DrawImage) arguments.get(0)).image, null), "png",
+					ImageIO.write(SwingFXUtils.fromFXImage(((DrawImage) arguments[0]).image, null), "png",
 							saveFile);
 				} catch (IOException e) {
 
@@ -170,36 +190,46 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 		// returns instance of list data structure - a wrapper
 		// around java's arraylist
-		globals.define("List", new DrawCallable() {
+		PRELUDE.define("List", new DrawCallable() {
 			@Override
 			public int arity() {
 				return 0;
 			}
 
 			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
+			public Object call(Interpreter interpreter, Object[] arguments) {
 				return new DrawList();
 			}
 		});
 
 		// returns instance of map data structure - a wrapper
 		// around java's hashmap
-		globals.define("Map", new DrawCallable() {
+		PRELUDE.define("Map", new DrawCallable() {
 			@Override
 			public int arity() {
 				return 0;
 			}
 
 			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
+			public Object call(Interpreter interpreter, Object[] arguments) {
 				return new DrawMap();
 			}
 		});
 
-		globals.define("Math", math);
+		PRELUDE.define("Math", new DrawMath());
+	}
+
+	Interpreter(DrawCanvas canvas) {
+		this.canvas = canvas;
+		canvas.clear();
+		canvas.flush();
+		globals = PRELUDE.copy();
 	}
 
-	void interpret(List<Stmt> statements) {
+	// runs the script in a frame of the given size, which holds the
+	// locals of its top level blocks
+	void interpret(List<Stmt> statements, int size) {
+		environment = new Environment(Environment.NO_CELLS, size);
 		try {
 			for (Stmt statement : statements) {
 				execute(statement);
@@ -247,6 +277,31 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 	@Override
 	public Object visitSetExpr(Expr.Set expr) {
 		Object object = evaluate(expr.object);
+		if (expr.equals.type != EQUAL)
+			return compoundSet(expr, object);
+
+		if (Draw.specialize) {
+			if (expr.state == UNINITIALIZED) {
+				if (expr.index != null)
+					expr.state = object instanceof DrawArray ? ARRAY : GENERIC;
+				else
+					expr.state = object instanceof DrawInstance && !(object instanceof DrawArray) ? INSTANCE : GENERIC;
+				if (expr.state == INSTANCE)
+					expr.cache = new InlineCache();
+			}
+
+			if (expr.state == ARRAY && object instanceof DrawArray) {
+				Object value = evaluate(expr.value);
+				((DrawArray) object).elements[index(expr.index)] = value;
+				return value;
+			}
+			if (expr.state == INSTANCE && object instanceof DrawInstance && !(object instanceof DrawArray)) {
+				Object value = evaluate(expr.value);
+				expr.cache.set((DrawInstance) object, expr.name, value);
+				return value;
+			}
+			expr.state = GENERIC;
+		}
 
 		if (!(object instanceof DrawInstance)) {
 			// raise error if left side of set expression is not
@@ -269,15 +324,12 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 	@Override
 	public Object visitSuperExpr(Expr.Super expr) {
-		int distance = locals.get(expr);
-		// gets super class from class scope
-		DrawClass superclass = (DrawClass) environment.getAt(distance, "super");
-
-		// this is 1 closer than superclass to current scope
-		DrawInstance object = (DrawInstance) environment.getAt(distance - 1, "this");
+		// gets super class from the cell the class statement made
+		DrawClass superclass = (DrawClass) lookUpVariable(expr.keyword, expr.kind, expr.slot);
+		DrawInstance object = (DrawInstance) visitThisExpr(expr.self);
 
 		// looks for method in superclass
-		DrawFunction method = superclass.findMethod(object, expr.method.lexeme);
+		DrawFunction method = superclass.findMethod(object, expr.method.symbol);
 		// throws error if method not found in superclass
 		if (method == null)
 			throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
@@ -288,42 +340,107 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 	@Override
 	public Object visitThisExpr(Expr.This expr) {
 		// returns instance
-		return lookUpVariable(expr.keyword, expr);
+		return lookUpVariable(expr.keyword, expr.kind, expr.slot);
 	}
 
 	@Override
-	public Void visitBreakStmt(Stmt.Break stmt) {
-		throw new BreakException();
+	public Object visitBreakStmt(Stmt.Break stmt) {
+		return BREAK;
 	}
 
 	@Override
-	public Void visitContinueStmt(Stmt.Continue stmt) {
-		throw new ContinueException();
+	public Object visitContinueStmt(Stmt.Continue stmt) {
+		return CONTINUE;
+	}
+
+	// a compound assignment such as a[i] += v or obj.x *= v. The value
+	// is evaluated after the object and before the index, as in a set,
+	// and the element or field is then read and written in place
+	private Object compoundSet(Expr.Set expr, Object object) {
+		if (!(object instanceof DrawInstance))
+			throw new RuntimeError(expr.name, "Only instances have fields.");
+		Object value = evaluate(expr.value);
+
+		if (object instanceof DrawArray && expr.index != null) {
+			Object[] elements = ((DrawArray) object).elements;
+			int index = index(expr.index);
+			return elements[index] = compoundAssign(expr.equals, elements[index], value);
+		}
+
+		DrawInstance instance = (DrawInstance) object;
+		if (Draw.specialize) {
+			if (expr.cache == null)
+				expr.cache = new InlineCache();
+			int slot = expr.cache.field(instance, expr.name);
+			if (slot >= 0)
+				return instance.slots[slot] = compoundAssign(expr.equals, instance.slots[slot], value);
+		}
+		value = compoundAssign(expr.equals, instance.get(expr.name), value);
+		instance.set(expr.name, value);
+		return value;
+	}
+
+	// ++ or -- on an element or field, the object and index are
+	// evaluated once
+	private Object increment(Expr.Unary expr, Expr.Get target) {
+		Object object = evaluate(target.object);
+		int delta = expr.operator.type == PLUS_PLUS ? 1 : -1;
+
+		if (object instanceof DrawArray && target.index != null) {
+			Object[] elements = ((DrawArray) object).elements;
+			int index = index(target.index);
+			Object current = elements[index];
+			checkNumberOperand(expr.operator, current);
+			Object value = box((double) current + delta);
+			elements[index] = value;
+			return expr.postfix ? current : value;
+		}
+
+		if (!(object instanceof DrawInstance))
+			throw new RuntimeError(target.name, "Only instances have fields.");
+		DrawInstance instance = (DrawInstance) object;
+		int slot = -1;
+		if (Draw.specialize) {
+			if (target.cache == null)
+				target.cache = new InlineCache();
+			slot = target.cache.field(instance, target.name);
+		}
+		Object current = slot >= 0 ? instance.slots[slot] : instance.get(target.name);
+		checkNumberOperand(expr.operator, current);
+		Object value = box((double) current + delta);
+		if (slot >= 0)
+			instance.slots[slot] = value;
+		else
+			instance.set(target.name, value);
+		return expr.postfix ? current : value;
 	}
 
 	@Override
 	public Object visitUnaryExpr(Expr.Unary expr) {
+		// negation evaluates its operand unboxed
+		if (expr.operator.type == MINUS)
+			return -unaryOperand(expr);
+		if ((expr.operator.type == PLUS_PLUS || expr.operator.type == MINUS_MINUS) && expr.right instanceof Expr.Get)
+			return increment(expr, (Expr.Get) expr.right);
+
 		Object right = evaluate(expr.right);
 
 		switch (expr.operator.type) {
 			case BANG:
 				return !isTruthy(right);
-			case MINUS:
-				checkNumberOperand(expr.operator, right);
-				return -(double) right;
 			case PLUS_PLUS: {
 				if (!(expr.right instanceof Expr.Variable))
 					throw new RuntimeError(expr.operator, "Operand of an increment operator must be a variable.");
 
 				checkNumberOperand(expr.operator, right);
-				double value = (double) right;
+				Object value = box((double) right + 1);
 				Expr.Variable variable = (Expr.Variable) expr.right;
-				environment.assign(variable.name, value + 1);
+				assignVariable(variable.name, variable.kind, variable.slot, value);
 
 				if (expr.postfix)
-					return value;
+					return right;
 				else
-					return value + 1;
+					return value;
 			}
 
 			case MINUS_MINUS: {
@@ -331,14 +448,14 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 					throw new RuntimeError(expr.operator, "Operand of an increment operator must be a variable.");
 
 				checkNumberOperand(expr.operator, right);
-				double value = (double) right;
+				Object value = box((double) right - 1);
 				Expr.Variable variable = (Expr.Variable) expr.right;
-				environment.assign(variable.name, value - 1);
+				assignVariable(variable.name, variable.kind, variable.slot, value);
 
 				if (expr.postfix)
-					return value;
+					return right;
 				else
-					return value - 1;
+					return value;
 			}
 		}
 
@@ -348,13 +465,120 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 	@Override
 	public Object visitVariableExpr(Expr.Variable expr) {
 		// returns the value associated with a variable name
-		return lookUpVariable(expr.name, expr);
+		return lookUpVariable(expr.name, expr.kind, expr.slot);
+	}
+
+	@Override
+	public Object visitIncrementLocalExpr(Expr.IncrementLocal expr) {
+		Object[] values = environment.values;
+		Object current = values[expr.slot];
+		checkNumberOperand(expr.operator, current);
+		Object value = box((double) current + expr.delta);
+		values[expr.slot] = value;
+		return expr.postfix ? current : value;
+	}
+
+	@Override
+	public Object visitCompoundLocalExpr(Expr.CompoundLocal expr) {
+		// the value is evaluated before the variable is read, as in
+		// visitAssignExpr
+		Object value;
+		try {
+			double number = evaluateDouble(expr.value);
+			Object current = environment.values[expr.slot];
+			value = current instanceof Double
+					? box(arithmetic(compoundOperator(expr.equals.type), (double) current, number))
+					: compoundAssign(expr.equals, current, number);
+		} catch (UnexpectedResult e) {
+			value = compoundAssign(expr.equals, environment.values[expr.slot], e.value);
+		}
+		environment.values[expr.slot] = value;
+		return value;
+	}
+
+	@Override
+	public Object visitIndexLocalExpr(Expr.IndexLocal expr) {
+		Object object = evaluate(expr.object);
+		Object index = environment.values[expr.index];
+		if (object instanceof DrawArray)
+			return ((DrawArray) object).get((int) (double) index);
+		if (object instanceof DrawInstance)
+			return ((DrawInstance) object).get(expr.name);
+		throw new RuntimeError(expr.name, "Only instances have properties.");
+	}
+
+	@Override
+	public Object visitCompareLocalExpr(Expr.CompareLocal expr) {
+		Object[] values = environment.values;
+		Object left = values[expr.left];
+		Object right = expr.right >= 0 ? values[expr.right] : expr.constant;
+		if (left instanceof Double && right instanceof Double) {
+			double a = (double) left;
+			double b = (double) right;
+			switch (expr.operator.type) {
+				case LESS:
+					return a < b;
+				case LESS_EQUAL:
+					return a <= b;
+				case GREATER:
+					return a > b;
+				default:
+					return a >= b;
+			}
+		}
+		return binary((Expr.Binary) expr.original, left, right);
+	}
+
+	private Object lookUpVariable(Token name, int kind, int slot) {
+		// locals are read from where the resolver found them, otherwise
+		// the variable is assumed global
+		switch (kind) {
+			case Expr.LOCAL:
+				return environment.values[slot];
+			case Expr.CELL:
+				return ((Cell) environment.values[slot]).value;
+			case Expr.CAPTURED:
+				return environment.closure[slot].value;
+		}
+
+		return globals.get(name, slot);
+	}
+
+	private void assignVariable(Token name, int kind, int slot, Object value) {
+		// if is local then assigns where the resolver found it
+		switch (kind) {
+			case Expr.LOCAL:
+				environment.values[slot] = value;
+				return;
+			case Expr.CELL:
+				((Cell) environment.values[slot]).value = value;
+				return;
+			case Expr.CAPTURED:
+				environment.closure[slot].value = value;
+				return;
+		}
+
+		// otherwise updates it in global scope, raising an error
+		// if it was never defined
+		globals.assign(name, slot, value);
+	}
+
+	// defines a declaration in the current frame, or globally
+	// if the resolver gave it no slot. A captured one gets a new cell
+	private void define(Token name, int slot, boolean cell, Object value) {
+		if (slot == -1)
+			globals.define(name.symbol, value);
+		else
+			environment.define(slot, cell ? new Cell(value) : value);
 	}
 
-	private Object lookUpVariable(Token name, Expr expr) {
-		Integer distance = locals.get(expr);
-		// if distance is null then assume global, else return resolved value
-		return distance == null ? globals.get(name) : environment.getAt(distance, name.lexeme);
+	// sets a declaration that define gave a placeholder, so closures
+	// made in between could capture its cell
+	private void redefine(Token name, int slot, boolean cell, Object value) {
+		if (cell)
+			((Cell) environment.values[slot]).value = value;
+		else
+			define(name, slot, false, value);
 	}
 
 	@Override
@@ -366,13 +590,13 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 	}
 
 	// checks to see if operand is a number
-	private void checkNumberOperand(Token operator, Object operand) {
+	static void checkNumberOperand(Token operator, Object operand) {
 		if (operand instanceof Double)
 			return;
 		throw new RuntimeError(operator, "Operand must be a number.");
 	}
 
-	private void checkNumberOperands(Token operator, Object left, Object right) {
+	static void checkNumberOperands(Token operator, Object left, Object right) {
 		if (left instanceof Double && right instanceof Double)
 			return;
 
@@ -380,7 +604,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 	}
 
 	// returns false if value is null or false, otherwise returns true
-	private boolean isTruthy(Object object) {
+	static boolean isTruthy(Object object) {
 		if (object == null)
 			return false;
 		if (object instanceof Boolean)
@@ -388,7 +612,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return true;
 	}
 
-	private boolean isEqual(Object a, Object b) {
+	static boolean isEqual(Object a, Object b) {
 		if (a == null && b == null)
 			return true;
 		if (a == null)
@@ -405,7 +629,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 	}
 
 	// converts java value representation to draw lang
-	private String stringify(Object object) {
+	static String stringify(Object object) {
 		if (object == null)
 			return "null";
 
@@ -421,7 +645,19 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 	@Override
 	public Object visitFunctionExpr(Expr.Function expr) {
-		return new DrawFunction("", expr, environment, false);
+		return new DrawFunction("", expr, environment.capture(expr), false);
+	}
+
+	@Override
+	public Object visitInlineExpr(Expr.Inline expr) {
+		bind(expr);
+		return evaluate(expr.body);
+	}
+
+	// stores an inlined call's arguments in the slots its body reads
+	private void bind(Expr.Inline expr) {
+		for (int i = 0; i < expr.slots.length; i++)
+			environment.values[expr.slots[i]] = evaluate(expr.arguments.get(i));
 	}
 
 	@Override
@@ -433,24 +669,25 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return expr.accept(this);
 	}
 
-	private void execute(Stmt stmt) {
-		stmt.accept(this);
+	// executes a statement and returns how it completed
+	private Object execute(Stmt stmt) {
+		return stmt.accept(this);
 	}
 
-	void resolve(Expr expr, int depth) {
-		locals.put(expr, depth);
-	}
-
-	void executeBlock(List<Stmt> statements, Environment environment) {
+	Object executeBlock(List<Stmt> statements, Environment environment) {
 		Environment previous = this.environment;
 		try {
 			// sets current environment to environment of block
 			this.environment = environment;
 
-			// loops through statements and executes them
+			// loops through statements and executes them, stopping
+			// at a break, continue or return
 			for (Stmt statement : statements) {
-				execute(statement);
+				Object completion = execute(statement);
+				if (completion != null)
+					return completion;
 			}
+			return null;
 		} finally {
 			// restores environment to previous one
 			this.environment = previous;
@@ -458,14 +695,21 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 	}
 
 	@Override
-	public Void visitBlockStmt(Stmt.Block stmt) {
-		executeBlock(stmt.statements, new Environment(environment));
+	public Object visitBlockStmt(Stmt.Block stmt) {
+		if (Compiler.isDoWhile(stmt))
+			return executeDoWhile((Stmt.While) stmt.statements.get(1));
+		// a block's locals live in the frame of the function around it
+		for (Stmt statement : stmt.statements) {
+			Object completion = execute(statement);
+			if (completion != null)
+				return completion;
+		}
 		return null;
 	}
 
 	@Override
-	public Void visitClassStmt(Stmt.Class stmt) {
-		environment.define(stmt.name.lexeme, null);
+	public Object visitClassStmt(Stmt.Class stmt) {
+		define(stmt.name, stmt.slot, stmt.cell, null);
 		// evaluates superclass expression if it exists
 		Object superClass = null;
 		if (stmt.superclass != null) {
@@ -474,65 +718,83 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 			if (!(superClass instanceof DrawClass)) {
 				throw new RuntimeError(stmt.name, "Superclass must be a class");
 			}
-			environment = new Environment(environment);
-			environment.define("super", superClass);
-
+			// methods capture the superclass from its cell
+			environment.define(stmt.superSlot, new Cell(superClass));
 		}
 
 		Map<String, DrawFunction> classMethods = new HashMap<>();
 		for (Stmt.Function method : stmt.classMethods) {
-			DrawFunction function = new DrawFunction(method.name.lexeme, method.function, environment, false);
+			DrawFunction function = new DrawFunction(method.name.lexeme, method.function,
+					environment.capture(method.function), false);
 			classMethods.put(method.name.lexeme, function);
 		}
 		DrawClass metaClass = new DrawClass(null, stmt.name.lexeme + " metaclass", null, classMethods);
 
 		Map<String, DrawFunction> methods = new HashMap<>();
 		for (Stmt.Function method : stmt.methods) {
-			DrawFunction function = new DrawFunction(method.name.lexeme, method.function, environment, false);
+			DrawFunction function = new DrawFunction(method.name.lexeme, method.function,
+					environment.capture(method.function), false);
 			methods.put(method.name.lexeme, function);
 		}
 		DrawClass drawClass = new DrawClass(metaClass, stmt.name.lexeme, (DrawClass) superClass, methods);
-		if (superClass != null)
-			environment = environment.enclosing;
-		environment.assign(stmt.name, drawClass);
+		redefine(stmt.name, stmt.slot, stmt.cell, drawClass);
 		return null;
 	}
 
 	@Override
-	public Void visitExpressionStmt(Stmt.Expression stmt) {
+	public Object visitExpressionStmt(Stmt.Expression stmt) {
 		evaluate(stmt.expression);
 		return null;
 	}
 
 	@Override
-	public Void visitFunctionStmt(Stmt.Function stmt) {
-		DrawFunction function = new DrawFunction(stmt.name.lexeme, stmt.function, environment, false);
+	public Object visitMethodCallStmt(Stmt.MethodCall stmt) {
+		invokeMethod(stmt.call, (Expr.Get) stmt.call.callee);
+		return null;
+	}
+
+	@Override
+	public Object visitFunctionStmt(Stmt.Function stmt) {
+		// the function's cell exists before it is made, so that it can
+		// capture itself
+		define(stmt.name, stmt.slot, stmt.cell, null);
+		DrawFunction function = new DrawFunction(stmt.name.lexeme, stmt.function,
+				environment.capture(stmt.function), false);
 		// associates function name with function in environment
-		environment.define(stmt.name.lexeme, function);
+		redefine(stmt.name, stmt.slot, stmt.cell, function);
 		return null;
 	}
 
 	@Override
-	public Void visitIfStmt(Stmt.If stmt) {
+	public Object visitIfStmt(Stmt.If stmt) {
 		if (isTruthy(evaluate(stmt.condition))) {
-			execute(stmt.thenBranch);
+			return execute(stmt.thenBranch);
 		} else if (stmt.elseBranch != null) {
-			execute(stmt.elseBranch);
+			return execute(stmt.elseBranch);
 		}
 		return null;
 	}
 
 	@Override
-	public Void visitReturnStmt(Stmt.Return stmt) {
+	public Object visitReturnStmt(Stmt.Return stmt) {
 		Object value = null;
 		if (stmt.value != null)
 			value = evaluate(stmt.value);
 
-		throw new Return(value);
+		returnValue = value;
+		return RETURN;
+	}
+
+	// hands the value of the last return statement to the function call
+	// that executed it
+	Object takeReturnValue() {
+		Object value = returnValue;
+		returnValue = null;
+		return value;
 	}
 
 	@Override
-	public Void visitVarStmt(Stmt.Var stmt) {
+	public Object visitVarStmt(Stmt.Var stmt) {
 		// defines a variable, checks if there is an initializer
 		// if not then it gets initialized to null
 		Object value = null;
@@ -540,28 +802,103 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 			value = evaluate(stmt.initializer);
 		}
 
-		// adds the variable name and value to environment
-		environment.define(stmt.name.lexeme, value);
+		// adds the variable value to environment
+		define(stmt.name, stmt.slot, stmt.cell, value);
 		return null;
 	}
 
 	@Override
-	public Void visitWhileStmt(Stmt.While stmt) {
+	public Object visitForStmt(Stmt.For stmt) {
+		if (stmt.initializer != null)
+			execute(stmt.initializer);
+
+		if (Draw.specialize && stmt.counted
+				&& environment.values[((Stmt.Var) stmt.initializer).slot] instanceof Double)
+			return executeCounted(stmt);
+
+		while (stmt.condition == null || isTruthy(evaluate(stmt.condition))) {
+			Object completion = execute(stmt.body);
+			if (completion == BREAK)
+				break;
+			if (completion == RETURN)
+				return RETURN;
+			// a continue goes on to the increment
+			if (stmt.increment != null)
+				evaluate(stmt.increment);
+		}
+		return null;
+	}
+
+	// runs a counted loop with the counter in a double, it is only boxed
+	// into the counter's slot for the body to read, whole counts reuse
+	// their shared boxes
+	private Object executeCounted(Stmt.For stmt) {
+		Object[] values = environment.values;
+		int slot = ((Stmt.Var) stmt.initializer).slot;
+		double counter = (double) values[slot];
+		while (inBounds((Expr.Binary) stmt.condition, counter)) {
+			Object completion = execute(stmt.body);
+			if (completion == BREAK)
+				break;
+			if (completion == RETURN)
+				return RETURN;
+			counter += stmt.step;
+			values[slot] = box(counter);
+		}
+		return null;
+	}
+
+	// compares a counted loop's counter with the bound in its condition
+	private boolean inBounds(Expr.Binary condition, double counter) {
+		double bound;
+		try {
+			bound = evaluateDouble(condition.right);
+		} catch (UnexpectedResult e) {
+			// compares the way the condition would, reporting the error
+			return isTruthy(binary(condition, counter, e.value));
+		}
+		switch (condition.operator.type) {
+			case LESS:
+				return counter < bound;
+			case LESS_EQUAL:
+				return counter <= bound;
+			case GREATER:
+				return counter > bound;
+			default:
+				return counter >= bound;
+		}
+	}
+
+	@Override
+	public Object visitWhileStmt(Stmt.While stmt) {
 		// keep executing statement body while statement
 		// condition evaluates to a non falsey value
 		while (isTruthy(evaluate(stmt.condition))) {
-			try {
-				execute(stmt.body);
-			} catch (BreakException breakException) {
+			Object completion = execute(stmt.body);
+			if (completion == BREAK)
 				break;
-			} catch (ContinueException continueException) {
-
-			}
+			// a return leaves the loop and is passed up to the call
+			if (completion == RETURN)
+				return RETURN;
 		}
 
 		return null;
 	}
 
+	// runs a do-while's body before its first check, so continue and
+	// break in the first pass behave as they do in later ones
+	private Object executeDoWhile(Stmt.While stmt) {
+		do {
+			Object completion = execute(stmt.body);
+			if (completion == BREAK)
+				break;
+			if (completion == RETURN)
+				return RETURN;
+		} while (isTruthy(evaluate(stmt.condition)));
+
+		return null;
+	}
+
 	public Object visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
 		DrawArray array = new DrawArray(expr.values.size());
 		for (int i = 0; i < expr.values.size(); i++) {
@@ -574,17 +911,44 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 	public Object visitAssignExpr(Expr.Assign expr) {
 		// assigns new value to variable
 		// obtains value
-		Object value = evaluate(expr.value);
+		Object value;
 
 		// checks for short hand modifiers like +=
-		switch (expr.equals.type) {
-			case EQUAL:
-				break;
+		if (expr.equals.type != EQUAL) {
+			Object current;
+			if (Draw.specialize) {
+				// on numbers only the stored result is boxed
+				try {
+					double number = evaluateDouble(expr.value);
+					current = lookUpVariable(expr.name, expr.kind, expr.slot);
+					value = current instanceof Double
+							? box(arithmetic(compoundOperator(expr.equals.type), (double) current, number))
+							: compoundAssign(expr.equals, current, number);
+				} catch (UnexpectedResult e) {
+					current = lookUpVariable(expr.name, expr.kind, expr.slot);
+					value = compoundAssign(expr.equals, current, e.value);
+				}
+			} else {
+				value = evaluate(expr.value);
+				current = lookUpVariable(expr.name, expr.kind, expr.slot);
+				value = compoundAssign(expr.equals, current, value);
+			}
+		} else {
+			value = evaluate(expr.value);
+		}
+
+		assignVariable(expr.name, expr.kind, expr.slot, value);
+		return value;
+	}
+
+	// applies the operator of a compound assignment like += to the
+	// current value of the target and the assigned value
+	static Object compoundAssign(Token equals, Object current, Object value) {
+		switch (equals.type) {
 			case PLUS_EQUAL: {
-				Object current = environment.get(expr.name);
 				// if both numbers return sum
 				if (value instanceof Double && current instanceof Double) {
-					value = (double) current + (double) value;
+					value = box((double) current + (double) value);
 				}
 
 				// if both strings concatenate and return
@@ -601,58 +965,82 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 			}
 
 			case MINUS_EQUAL: {
-				Object current = environment.get(expr.name);
-				checkNumberOperands(expr.equals, current, value);
-				value = (double) current - (double) value;
+				checkNumberOperands(equals, current, value);
+				value = box((double) current - (double) value);
 				break;
 			}
 
 			case STAR_EQUAL: {
-				Object current = environment.get(expr.name);
-				checkNumberOperands(expr.equals, current, value);
-				value = (double) current * (double) value;
+				checkNumberOperands(equals, current, value);
+				value = box((double) current * (double) value);
 				break;
 			}
 
 			case SLASH_EQUAL: {
-				Object current = environment.get(expr.name);
-				checkNumberOperands(expr.equals, current, value);
+				checkNumberOperands(equals, current, value);
 				value = (double) current / (double) value;
 				break;
 			}
 
 			case STAR_STAR_EQUAL: {
-				Object current = environment.get(expr.name);
-				checkNumberOperands(expr.equals, current, value);
+				checkNumberOperands(equals, current, value);
 				value = Math.pow((double) current, (double) value);
 				break;
 			}
 
 			case MODULOS_EQUAL: {
-				Object current = environment.get(expr.name);
-				checkNumberOperands(expr.equals, current, value);
-				value = (double) current % (double) value;
+				checkNumberOperands(equals, current, value);
+				value = box((double) current % (double) value);
 				break;
 			}
 		}
 
-		Integer distance = locals.get(expr);
-		// if is local then assigns in current environment
-		if (distance != null) {
-			environment.assignAt(distance, expr.name, value);
-		} else {
-			// updates it in global scope
-			globals.assign(expr.name, value);
-		}
-
 		return value;
 	}
 
 	@Override
 	public Object visitBinaryExpr(Expr.Binary expr) {
+		if (expr.state == PROVEN)
+			return numberBinary(expr.operator.type, evaluateDouble(expr.left), evaluateDouble(expr.right));
+		if (Draw.specialize && expr.state == NUMBER) {
+			// both operands are evaluated unboxed, only the result is boxed
+			double left;
+			try {
+				left = evaluateDouble(expr.left);
+			} catch (UnexpectedResult e) {
+				expr.state = GENERIC;
+				return binary(expr, e.value, evaluate(expr.right));
+			}
+			double right;
+			try {
+				right = evaluateDouble(expr.right);
+			} catch (UnexpectedResult e) {
+				expr.state = GENERIC;
+				return binary(expr, left, e.value);
+			}
+			return numberBinary(expr.operator.type, left, right);
+		}
+
 		Object left = evaluate(expr.left);
 		Object right = evaluate(expr.right);
 
+		if (Draw.specialize) {
+			if (expr.state == UNINITIALIZED)
+				expr.state = specializeBinary(expr.operator, left, right);
+
+			if (expr.state == NUMBER && left instanceof Double && right instanceof Double)
+				return numberBinary(expr.operator.type, (double) left, (double) right);
+			if (expr.state == STRING && left instanceof DrawString && right instanceof DrawString)
+				return new DrawString(left.toString() + right.toString());
+			// the operands changed type, so the node stops specializing
+			expr.state = GENERIC;
+		}
+
+		return binary(expr, left, right);
+	}
+
+	// applies a binary operator to operands of any type
+	private Object binary(Expr.Binary expr, Object left, Object right) {
 		switch (expr.operator.type) {
 			case GREATER:
 				checkNumberOperands(expr.operator, left, right);
@@ -676,17 +1064,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 			// special case because '+' can be used for adding numbers
 			// or string concatenation
 			case PLUS:
-				if (left instanceof Double && right instanceof Double) {
-					return (double) left + (double) right;
-				}
-				if (left instanceof DrawString && right instanceof DrawString) {
-					return new DrawString((String) left.toString() + (String) right.toString());
-				}
-				if (left instanceof DrawString || right instanceof DrawString) {
-					return new DrawString(stringify(left) + stringify(right));
-				}
-
-				throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+				return add(expr.operator, left, right);
 
 			case SLASH:
 				checkNumberOperands(expr.operator, left, right);
@@ -705,34 +1083,484 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	private static int specializeBinary(Token operator, Object left, Object right) {
+		if (operator.type == COMMA)
+			return GENERIC;
+		if (left instanceof Double && right instanceof Double)
+			return NUMBER;
+		if (operator.type == PLUS && left instanceof DrawString && right instanceof DrawString)
+			return STRING;
+		return GENERIC;
+	}
+
+	// evaluates a binary operator on operands already known to be numbers,
+	// giving the same results as the generic path
+	private static Object numberBinary(TokenType operator, double left, double right) {
+		switch (operator) {
+			case GREATER:
+				return left > right;
+			case GREATER_EQUAL:
+				return left >= right;
+			case LESS:
+				return left < right;
+			case LESS_EQUAL:
+				return left <= right;
+			// compares like Double.equals, which isEqual uses
+			case BANG_EQUAL:
+				return Double.doubleToLongBits(left) != Double.doubleToLongBits(right);
+			case EQUAL_EQUAL:
+				return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+			case MINUS:
+				return box(left - right);
+			case PLUS:
+				return box(left + right);
+			case SLASH:
+				return left / right;
+			case STAR:
+				return box(left * right);
+			case MODULOS:
+				return box(left % right);
+			case STAR_STAR:
+				return Math.pow(left, right);
+		}
+		return null;
+	}
+
+	// evaluates an expression expected to give a number without boxing
+	// it, so nested arithmetic only boxes its final result. Throws
+	// UnexpectedResult with the value when it isn't a number
+	double evaluateDouble(Expr expr) {
+		if (expr instanceof Expr.Binary) {
+			Expr.Binary binary = (Expr.Binary) expr;
+			if (binary.state == PROVEN && isArithmetic(binary.operator.type))
+				return arithmetic(binary.operator.type, evaluateDouble(binary.left), evaluateDouble(binary.right));
+			if (Draw.specialize && binary.state == NUMBER && isArithmetic(binary.operator.type)) {
+				double left;
+				try {
+					left = evaluateDouble(binary.left);
+				} catch (UnexpectedResult e) {
+					binary.state = GENERIC;
+					return expectDouble(binary(binary, e.value, evaluate(binary.right)));
+				}
+				double right;
+				try {
+					right = evaluateDouble(binary.right);
+				} catch (UnexpectedResult e) {
+					binary.state = GENERIC;
+					return expectDouble(binary(binary, left, e.value));
+				}
+				return arithmetic(binary.operator.type, left, right);
+			}
+		} else if (expr instanceof Expr.Variable) {
+			// a local the Typer proved is a number is read without a check
+			Expr.Variable variable = (Expr.Variable) expr;
+			if (variable.number)
+				return (double) environment.values[variable.slot];
+		} else if (expr instanceof Expr.Literal) {
+			return expectDouble(((Expr.Literal) expr).value);
+		} else if (expr instanceof Expr.Grouping) {
+			return evaluateDouble(((Expr.Grouping) expr).expression);
+		} else if (expr instanceof Expr.Unary) {
+			Expr.Unary unary = (Expr.Unary) expr;
+			if (unary.operator.type == MINUS)
+				return -unaryOperand(unary);
+		} else if (expr instanceof Expr.Inline) {
+			bind((Expr.Inline) expr);
+			return evaluateDouble(((Expr.Inline) expr).body);
+		} else if (expr instanceof Expr.Intrinsic) {
+			Expr.Intrinsic intrinsic = (Expr.Intrinsic) expr;
+			if (Intrinsics.isMath(intrinsic.function))
+				return math(intrinsic);
+		}
+
+		return expectDouble(evaluate(expr));
+	}
+
+	// evaluates an array index, computed indices such as y * width + x
+	// aren't boxed
+	private int index(Expr expr) {
+		try {
+			return (int) evaluateDouble(expr);
+		} catch (UnexpectedResult e) {
+			return (int) (double) e.value;
+		}
+	}
+
+	private static double expectDouble(Object value) {
+		if (value instanceof Double)
+			return (double) value;
+		throw new UnexpectedResult(value);
+	}
+
+	private double unaryOperand(Expr.Unary expr) {
+		try {
+			return evaluateDouble(expr.right);
+		} catch (UnexpectedResult e) {
+			checkNumberOperand(expr.operator, e.value);
+			return (double) e.value;
+		}
+	}
+
+	private static boolean isArithmetic(TokenType operator) {
+		switch (operator) {
+			case MINUS:
+			case PLUS:
+			case SLASH:
+			case STAR:
+			case MODULOS:
+			case STAR_STAR:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	// the arithmetic operator a compound assignment such as += applies
+	private static TokenType compoundOperator(TokenType equals) {
+		switch (equals) {
+			case PLUS_EQUAL:
+				return PLUS;
+			case MINUS_EQUAL:
+				return MINUS;
+			case STAR_EQUAL:
+				return STAR;
+			case SLASH_EQUAL:
+				return SLASH;
+			case MODULOS_EQUAL:
+				return MODULOS;
+			default:
+				return STAR_STAR;
+		}
+	}
+
+	private static double arithmetic(TokenType operator, double left, double right) {
+		switch (operator) {
+			case MINUS:
+				return left - right;
+			case PLUS:
+				return left + right;
+			case SLASH:
+				return left / right;
+			case STAR:
+				return left * right;
+			case MODULOS:
+				return left % right;
+			default:
+				return Math.pow(left, right);
+		}
+	}
+
+	// whole numbers below this share one box each, so counters, indices
+	// and coordinates don't allocate a new Double every time they change
+	private static final Double[] WHOLE = new Double[1 << 16];
+
+	static {
+		for (int i = 0; i < WHOLE.length; i++)
+			WHOLE[i] = (double) i;
+	}
+
+	// boxes a number, whole numbers in range get their shared box. -0
+	// isn't equal to 0 so it is boxed on its own
+	static Object box(double value) {
+		// checks the range first, converting a number far outside an
+		// int's is slow
+		if (value >= 0 && value < WHOLE.length) {
+			int whole = (int) value;
+			if (whole == value && (whole > 0 || Double.doubleToRawLongBits(value) == 0L))
+				return WHOLE[whole];
+		}
+		return value;
+	}
+
+	// '+' adds numbers, or concatenates when either side is a string
+	static Object add(Token operator, Object left, Object right) {
+		if (left instanceof Double && right instanceof Double) {
+			return box((double) left + (double) right);
+		}
+		if (left instanceof DrawString && right instanceof DrawString) {
+			return new DrawString((String) left.toString() + (String) right.toString());
+		}
+		if (left instanceof DrawString || right instanceof DrawString) {
+			return new DrawString(stringify(left) + stringify(right));
+		}
+
+		throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+	}
+
+	@Override
+	public Object visitIntrinsicExpr(Expr.Intrinsic expr) {
+		switch (expr.function) {
+			case Intrinsics.STR:
+				return new DrawString(stringify(evaluate(expr.arguments.get(0))));
+			case Intrinsics.CLOCK:
+				return (double) System.currentTimeMillis();
+			case Intrinsics.COLOR:
+				return color(expr);
+			default:
+				return math(expr);
+		}
+	}
+
+	// runs a Math intrinsic on its arguments unboxed, ones that aren't
+	// numbers are handed to the built-in to report
+	private double math(Expr.Intrinsic expr) {
+		List<Expr> arguments = expr.arguments;
+		double a = 0;
+		double b = 0;
+		if (arguments.size() > 0) {
+			try {
+				a = evaluateDouble(arguments.get(0));
+			} catch (UnexpectedResult e) {
+				Object[] values = arguments.size() == 1 ? new Object[] { e.value }
+						: new Object[] { e.value, evaluate(arguments.get(1)) };
+				return expectDouble(Intrinsics.call(this, expr.function, expr.name, values));
+			}
+		}
+		if (arguments.size() > 1) {
+			try {
+				b = evaluateDouble(arguments.get(1));
+			} catch (UnexpectedResult e) {
+				Object[] values = { a, e.value };
+				return expectDouble(Intrinsics.call(this, expr.function, expr.name, values));
+			}
+		}
+		return Intrinsics.math(expr.function, a, b);
+	}
+
+	// Color(r, g, b, a) with its channels evaluated unboxed
+	private Object color(Expr.Intrinsic expr) {
+		List<Expr> arguments = expr.arguments;
+		double[] channels = new double[4];
+		for (int i = 0; i < 4; i++) {
+			try {
+				channels[i] = evaluateDouble(arguments.get(i));
+			} catch (UnexpectedResult e) {
+				Object[] values = new Object[4];
+				for (int j = 0; j < i; j++)
+					values[j] = channels[j];
+				values[i] = e.value;
+				for (int j = i + 1; j < 4; j++)
+					values[j] = evaluate(arguments.get(j));
+				return Intrinsics.call(this, expr.function, expr.name, values);
+			}
+		}
+		return Intrinsics.color(channels[0], channels[1], channels[2], channels[3]);
+	}
+
 	@Override
 	public Object visitCallExpr(Expr.Call expr) {
-		Object callee = evaluate(expr.callee);
+		// obj.name(...) and super.name(...) pass the receiver straight to
+		// the method instead of binding it first
+		if (Draw.specialize) {
+			if (expr.callee instanceof Expr.Get && ((Expr.Get) expr.callee).index == null)
+				return invokeMethod(expr, (Expr.Get) expr.callee);
+			if (expr.callee instanceof Expr.Super)
+				return invokeSuper(expr, (Expr.Super) expr.callee);
+		}
+
+		return call(expr, evaluate(expr.callee));
+	}
+
+	private Object call(Expr.Call expr, Object callee) {
+		// arguments go to the fixed arity entry points without
+		// being packed into an array
+		if (isTailCall(expr, callee)) {
+			DrawFunction function = (DrawFunction) callee;
+			return tailCall(expr, function, function.receiver);
+		}
+
+		List<Expr> arguments = expr.arguments;
+		switch (arguments.size()) {
+			case 0:
+				return check(expr, callee).call0(this);
+			case 1: {
+				Object a = evaluate(arguments.get(0));
+				return check(expr, callee).call1(this, a);
+			}
+			case 2: {
+				Object a = evaluate(arguments.get(0));
+				Object b = evaluate(arguments.get(1));
+				return check(expr, callee).call2(this, a, b);
+			}
+			case 3: {
+				Object a = evaluate(arguments.get(0));
+				Object b = evaluate(arguments.get(1));
+				Object c = evaluate(arguments.get(2));
+				return check(expr, callee).call3(this, a, b, c);
+			}
+			case 4: {
+				Object a = evaluate(arguments.get(0));
+				Object b = evaluate(arguments.get(1));
+				Object c = evaluate(arguments.get(2));
+				Object d = evaluate(arguments.get(3));
+				return check(expr, callee).call4(this, a, b, c, d);
+			}
+			default: {
+				Object[] values = evaluateArguments(expr);
+				return check(expr, callee).call(this, values);
+			}
+		}
+	}
+
+	private Object invokeMethod(Expr.Call expr, Expr.Get get) {
+		Object object = evaluate(get.object);
+		if (!(object instanceof DrawInstance))
+			throw new RuntimeError(get.name, "Only instances have properties.");
+		DrawInstance instance = (DrawInstance) object;
+
+		if (expr.cache == null)
+			expr.cache = new InlineCache();
+
+		NativeTable<?> table = instance.nativeMethods();
+		if (table != null) {
+			NativeTable.Entry<?> entry = expr.cache.nativeMethod(table, get.name);
+			// properties such as length are read and called as values
+			if (entry == null)
+				return call(expr, instance.get(get.name));
+
+			Object[] arguments = evaluateArguments(expr);
+			if (entry != expr.checked) {
+				checkArity(expr, entry.arity);
+				expr.checked = entry;
+			}
+			return entry.call(instance, this, get.name, arguments);
+		}
+
+		DrawFunction method = expr.cache.method(instance, get.name);
+		// fields and the properties of natives are called as values
+		if (method == null)
+			return call(expr, instance.get(get.name));
+
+		return invoke(expr, method, instance);
+	}
+
+	private Object invokeSuper(Expr.Call expr, Expr.Super callee) {
+		DrawClass superclass = (DrawClass) lookUpVariable(callee.keyword, callee.kind, callee.slot);
+		DrawInstance object = (DrawInstance) visitThisExpr(callee.self);
+		DrawFunction method = superclass.lookUpMethod(callee.method.symbol);
+		if (method == null)
+			throw new RuntimeError(callee.method, "Undefined property '" + callee.method.lexeme + "'.");
+
+		return invoke(expr, method, object);
+	}
 
-		List<Object> arguments = new ArrayList<>();
-		for (Expr argument : expr.arguments) {
-			arguments.add(evaluate(argument));
+	// calls a method with the receiver in its frame, the same way call
+	// passes arguments
+	private Object invoke(Expr.Call expr, DrawFunction method, DrawInstance receiver) {
+		if (isTailCall(expr, method))
+			return tailCall(expr, method, receiver);
+
+		List<Expr> arguments = expr.arguments;
+		switch (arguments.size()) {
+			case 0:
+				check(expr, method);
+				return method.invoke0(this, receiver);
+			case 1: {
+				Object a = evaluate(arguments.get(0));
+				check(expr, method);
+				return method.invoke1(this, receiver, a);
+			}
+			case 2: {
+				Object a = evaluate(arguments.get(0));
+				Object b = evaluate(arguments.get(1));
+				check(expr, method);
+				return method.invoke2(this, receiver, a, b);
+			}
+			case 3: {
+				Object a = evaluate(arguments.get(0));
+				Object b = evaluate(arguments.get(1));
+				Object c = evaluate(arguments.get(2));
+				check(expr, method);
+				return method.invoke3(this, receiver, a, b, c);
+			}
+			case 4: {
+				Object a = evaluate(arguments.get(0));
+				Object b = evaluate(arguments.get(1));
+				Object c = evaluate(arguments.get(2));
+				Object d = evaluate(arguments.get(3));
+				check(expr, method);
+				return method.invoke4(this, receiver, a, b, c, d);
+			}
+			default: {
+				Object[] values = evaluateArguments(expr);
+				check(expr, method);
+				return method.invoke(this, receiver, values);
+			}
 		}
+	}
+
+	// only functions run by the tree walker loop over tail calls,
+	// compiled functions and initializers are called as usual
+	private static boolean isTailCall(Expr.Call expr, Object callee) {
+		return expr.tail && callee != null && callee.getClass() == DrawFunction.class
+				&& !((DrawFunction) callee).isInitializer;
+	}
+
+	private Object tailCall(Expr.Call expr, DrawFunction function, DrawInstance receiver) {
+		Object[] arguments = evaluateArguments(expr);
+		check(expr, function);
+		tailFunction = function;
+		tailReceiver = receiver;
+		tailArguments = arguments;
+		return TAIL_CALL;
+	}
+
+	private Object[] evaluateArguments(Expr.Call expr) {
+		if (expr.arguments.isEmpty())
+			return DrawCallable.NO_ARGUMENTS;
+
+		Object[] arguments = new Object[expr.arguments.size()];
+		for (int i = 0; i < arguments.length; i++) {
+			arguments[i] = evaluate(expr.arguments.get(i));
+		}
+		return arguments;
+	}
+
+	// checks that the callee is a function taking as many arguments as
+	// the call passes. A site remembers the callee it checked last, so
+	// calling the same function again skips the checks
+	private DrawCallable check(Expr.Call expr, Object callee) {
+		if (callee == expr.checked)
+			return (DrawCallable) callee;
 
 		// throws error if calling something that is not a function
 		if (!(callee instanceof DrawCallable))
 			throw new RuntimeError(expr.paren, "Can only call functions and classes.");
 
 		DrawCallable function = (DrawCallable) callee;
+		checkArity(expr, function.arity());
+		expr.checked = callee;
+		return function;
+	}
 
-		// checks if call has same number of arguments as function definition
-		if (arguments.size() != function.arity()) {
+	// checks if call has same number of arguments as function definition
+	private static void checkArity(Expr.Call expr, int arity) {
+		if (expr.arguments.size() != arity) {
 			throw new RuntimeError(expr.paren,
-					"Expected " + function.arity() + " arguments but got " + arguments.size() + ".");
+					"Expected " + arity + " arguments but got " + expr.arguments.size() + ".");
 		}
-
-		return function.call(this, arguments);
-
 	}
 
 	@Override
 	public Object visitGetExpr(Expr.Get expr) {
 		Object object = evaluate(expr.object);
+
+		if (Draw.specialize) {
+			if (expr.state == UNINITIALIZED) {
+				if (expr.index != null)
+					expr.state = object instanceof DrawArray ? ARRAY : GENERIC;
+				else
+					expr.state = object instanceof DrawInstance ? INSTANCE : GENERIC;
+				if (expr.state == INSTANCE)
+					expr.cache = new InlineCache();
+			}
+
+			if (expr.state == ARRAY && object instanceof DrawArray)
+				return ((DrawArray) object).elements[index(expr.index)];
+			if (expr.state == INSTANCE && object instanceof DrawInstance)
+				return expr.cache.get((DrawInstance) object, expr.name);
+			expr.state = GENERIC;
+		}
 		// if object is array and index is given
 		// return element at array index
 		if (object instanceof DrawArray && expr.index != null) {
@@ -0,0 +1,191 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.*;
+
+import javafx.scene.paint.Color;
+
+// puts intrinsics in place of calls to the built-ins scripts call most:
+// the Math functions, str, clock and Color. A call is only replaced when
+// the script never declares or assigns the global it goes through, so
+// the callee is known to be the built-in. The engines run an intrinsic
+// on its arguments unboxed, without looking the built-in up or packing
+// the arguments into an array, and the JIT compiles the Math ones to
+// calls of java.lang.Math. Math.PI and Math.E become literals. Runs
+// after the Eliminator, turned off with -Ddraw.intrinsics=false
+
+class Intrinsics extends Rewriter {
+	// the Math functions, numbered in the order of their names below
+	static final int ABS = 0;
+	static final int ACOS = 1;
+	static final int ASIN = 2;
+	static final int CBRT = 3;
+	static final int CEIL = 4;
+	static final int COS = 5;
+	static final int EXP = 6;
+	static final int FLOOR = 7;
+	static final int HYPOT = 8;
+	static final int LN = 9;
+	static final int LOG = 10;
+	static final int LOG10 = 11;
+	static final int MAX = 12;
+	static final int MIN = 13;
+	static final int POW = 14;
+	static final int RANDOM = 15;
+	static final int ROUND = 16;
+	static final int SIN = 17;
+	static final int SQRT = 18;
+	static final int TAN = 19;
+	static final int TO_DEGREES = 20;
+	static final int TO_RADIANS = 21;
+	// the global functions
+	static final int STR = 22;
+	static final int CLOCK = 23;
+	static final int COLOR = 24;
+
+	private static final List<String> MATH = Arrays.asList("abs", "acos", "asin", "cbrt", "ceil", "cos", "exp",
+			"floor", "hypot", "ln", "log", "log10", "max", "min", "pow", "random", "round", "sin", "sqrt", "tan",
+			"toDegrees", "toRadians");
+
+	// globals the script declares or assigns, which may not be the built-ins
+	private final Set<String> globals;
+
+	private Intrinsics(Set<String> globals) {
+		this.globals = globals;
+	}
+
+	static void replace(List<Stmt> statements) {
+		new Intrinsics(Scan.declared(statements)).rewrite(statements);
+	}
+
+	static boolean isMath(int function) {
+		return function <= TO_RADIANS;
+	}
+
+	// whether the expression reads the global the name gives, and the
+	// script leaves it the built-in
+	private boolean isBuiltin(Expr expr, String name) {
+		return expr instanceof Expr.Variable && ((Expr.Variable) expr).kind == Expr.GLOBAL
+				&& ((Expr.Variable) expr).name.lexeme.equals(name) && !globals.contains(name);
+	}
+
+	@Override
+	public Expr visitCallExpr(Expr.Call expr) {
+		super.visitCallExpr(expr);
+		int arguments = expr.arguments.size();
+
+		if (expr.callee instanceof Expr.Get) {
+			Expr.Get get = (Expr.Get) expr.callee;
+			// an indexed call such as fs[0](1) has no name to look up
+			if (get.index != null)
+				return expr;
+			int function = MATH.indexOf(get.name.lexeme);
+			if (function < 0 || !isBuiltin(get.object, "Math"))
+				return expr;
+			// a call with the wrong number of arguments reports it as before
+			if (DrawMath.METHODS.lookUp(get.name.symbol).arity != arguments)
+				return expr;
+			Draw.trace("[line " + get.name.line + "] made Math." + get.name.lexeme + " an intrinsic");
+			return new Expr.Intrinsic(get.name, function, expr.arguments);
+		}
+
+		if (isBuiltin(expr.callee, "str") && arguments == 1)
+			return intrinsic(expr, STR);
+		if (isBuiltin(expr.callee, "clock") && arguments == 0)
+			return intrinsic(expr, CLOCK);
+		if (isBuiltin(expr.callee, "Color") && arguments == 4)
+			return intrinsic(expr, COLOR);
+		return expr;
+	}
+
+	private static Expr intrinsic(Expr.Call call, int function) {
+		Token name = ((Expr.Variable) call.callee).name;
+		Draw.trace("[line " + name.line + "] made " + name.lexeme + " an intrinsic");
+		return new Expr.Intrinsic(name, function, call.arguments);
+	}
+
+	@Override
+	public Expr visitGetExpr(Expr.Get expr) {
+		super.visitGetExpr(expr);
+		if (expr.index != null || !isBuiltin(expr.object, "Math"))
+			return expr;
+		if (expr.name.symbol == Symbols.PI)
+			return new Expr.Literal(Math.PI);
+		if (expr.name.symbol == Symbols.E)
+			return new Expr.Literal(Math.E);
+		return expr;
+	}
+
+	@Override
+	public Expr visitBinaryExpr(Expr.Binary expr) {
+		super.visitBinaryExpr(expr);
+		// such as 2 * Math.PI
+		if (Folder.isConstant(expr.left) && Folder.isConstant(expr.right))
+			return Folder.fold(expr);
+		return expr;
+	}
+
+	// runs a Math function, b is unused by those taking one argument
+	static double math(int function, double a, double b) {
+		switch (function) {
+			case ABS:
+				return Math.abs(a);
+			case ACOS:
+				return Math.acos(a);
+			case ASIN:
+				return Math.asin(a);
+			case CBRT:
+				return Math.cbrt(a);
+			case CEIL:
+				return Math.ceil(a);
+			case COS:
+				return Math.cos(a);
+			case EXP:
+				return Math.exp(a);
+			case FLOOR:
+				return Math.floor(a);
+			case HYPOT:
+				return Math.hypot(a, b);
+			case LN:
+				return Math.log(a);
+			case LOG:
+				// log of b in base a
+				return Math.log10(b) / Math.log10(a);
+			case LOG10:
+				return Math.log10(a);
+			case MAX:
+				return Math.max(a, b);
+			case MIN:
+				return Math.min(a, b);
+			case POW:
+				return Math.pow(a, b);
+			case RANDOM:
+				return Math.random();
+			case ROUND:
+				return (double) Math.round(a);
+			case SIN:
+				return Math.sin(a);
+			case SQRT:
+				return Math.sqrt(a);
+			case TAN:
+				return Math.tan(a);
+			case TO_DEGREES:
+				return Math.toDegrees(a);
+			default:
+				return Math.toRadians(a);
+		}
+	}
+
+	static DrawColor color(double red, double green, double blue, double alpha) {
+		return new DrawColor(new Color(red / 255f, green / 255f, blue / 255f, alpha / 255f));
+	}
+
+	// calls the built-in itself, for arguments that aren't all numbers so
+	// that it reports them the way it always has
+	static Object call(Interpreter interpreter, int function, Token name, Object[] arguments) {
+		if (isMath(function)) {
+			DrawInstance math = (DrawInstance) interpreter.globals.get(Symbols.MATH);
+			return DrawMath.METHODS.lookUp(name.symbol).call(math, interpreter, name, arguments);
+		}
+		return ((DrawCallable) interpreter.globals.get(name.symbol)).call(interpreter, arguments);
+	}
+}
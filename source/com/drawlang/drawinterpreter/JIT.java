@@ -0,0 +1,714 @@
+package com.drawlang.drawinterpreter;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.util.*;
+
+// second tier of the tree walking interpreter. Once a function has been
+// called often enough its body is translated to jvm bytecode, loaded as
+// a hidden class, and run in place of the tree from then on.
+//
+// Only numeric code is compiled: parameters and locals must be numbers
+// or booleans, and the body may not call functions other than the Math
+// intrinsics, touch globals, captured variables or objects. Anything
+// else keeps running on the tree. Compiled code checks that every
+// argument is a number on entry and hands the call back to the tree if
+// one is not
+
+class JIT {
+	// compiling is turned off with -Ddraw.jit=false
+	static final boolean enabled = !"false".equals(System.getProperty("draw.jit"));
+	// calls a function needs before it is compiled
+	static final int threshold = Integer.getInteger("draw.jitThreshold", 1000);
+	// calls compiled code may give back before it is thrown away
+	private static final int MAX_DEOPTS = 100;
+
+	// returned by compiled code when it can't run the call
+	static final Object DEOPT = new Object();
+
+	// base class of the generated classes
+	abstract static class Code {
+		int deopts = 0;
+
+		// takes the slots of the call's frame, with the arguments
+		// already in place
+		abstract Object call(Object[] frame);
+	}
+
+	private static final String PACKAGE = "com/drawlang/drawinterpreter/";
+	private static final String CODE = PACKAGE + "JIT$Code";
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	// compiles the function, leaving it on the tree if the body uses
+	// anything the compiler doesn't support
+	static void compile(Expr.Function function) {
+		try {
+			byte[] bytes = new JIT(function).translate();
+			Class<?> type = lookup.defineHiddenClass(bytes, true).lookupClass();
+			function.compiled = (Code) lookup.findConstructor(type, MethodType.methodType(void.class)).invoke();
+		} catch (Unsupported e) {
+			// stays interpreted
+		} catch (Throwable e) {
+			// a class the verifier rejects is a compiler bug, but the
+			// program can still run on the tree
+			Draw.trace("failed to compile a function to bytecode, it stays on the tree: " + e);
+		}
+	}
+
+	// called when compiled code gave a call back to the tree
+	static void deoptimize(Expr.Function function) {
+		if (++function.compiled.deopts > MAX_DEOPTS)
+			function.compiled = null;
+	}
+
+	private static class Unsupported extends RuntimeException {
+		Unsupported() {
+			super(null, null, false, false);
+		}
+	}
+
+	private static final Unsupported UNSUPPORTED = new Unsupported();
+
+	// types of values the compiled code keeps unboxed
+	private static final int NUMBER = 1;
+	private static final int BOOLEAN = 2;
+
+	// jvm opcodes used by the translator
+	private static final int ACONST_NULL = 0x01, ICONST_0 = 0x03, ICONST_1 = 0x04,
+			DCONST_0 = 0x0e, DCONST_1 = 0x0f, BIPUSH = 0x10, SIPUSH = 0x11, LDC2_W = 0x14,
+			ILOAD = 0x15, DLOAD = 0x18, ALOAD = 0x19, ISTORE = 0x36, DSTORE = 0x39, ASTORE = 0x3a,
+			POP = 0x57, POP2 = 0x58, DUP = 0x59, DUP2 = 0x5c, DUP2_X2 = 0x5e,
+			DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DREM = 0x73, DNEG = 0x77,
+			DCMPL = 0x97, DCMPG = 0x98, IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c,
+			IFGT = 0x9d, IFLE = 0x9e, IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0, GOTO = 0xa7,
+			ARETURN = 0xb0, RETURN = 0xb1, GETSTATIC = 0xb2, INVOKEVIRTUAL = 0xb6,
+			INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, AALOAD = 0x32, L2D = 0x8a,
+			CHECKCAST = 0xc0, INSTANCEOF = 0xc1;
+
+	private static class Label {
+		int position = -1;
+		// offsets of the branches that jump here
+		final List<Integer> branches = new ArrayList<>();
+	}
+
+	// jvm locals and types of the variables in the frame, by resolver slot
+	private static class Scope {
+		final int[] locals;
+		final int[] types;
+
+		Scope(int size) {
+			locals = new int[size];
+			types = new int[size];
+		}
+	}
+
+	private static class Loop {
+		final Label start;
+		final Label end;
+
+		Loop(Label start, Label end) {
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	private final Expr.Function function;
+	private final ClassWriter writer = new ClassWriter();
+	private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+	private final List<Label> labels = new ArrayList<>();
+	private Scope scope;
+	private final Stack<Loop> loops = new Stack<>();
+	// local 0 is this, 1 the frame's slots and 2 a temporary
+	private int nextLocal = 3;
+	private int stack = 0;
+	private int maxStack = 0;
+
+	private JIT(Expr.Function function) {
+		this.function = function;
+	}
+
+	private byte[] translate() {
+		String name = PACKAGE + "Compiled";
+
+		// the constructor only calls Code's
+		emit(ALOAD, 1); code.write(0);
+		emit(INVOKESPECIAL, -1); u2(writer.methodRef(CODE, "<init>", "()V"));
+		emit(RETURN, 0);
+		writer.method(0, "<init>", "()V", takeCode(), 1, 1);
+
+		// captured variables live in cells, which compiled code doesn't use
+		if (function.cellParameters.length > 0) throw UNSUPPORTED;
+		Label deopt = new Label();
+		scope = new Scope(function.size);
+
+		// unboxes the arguments, all of which have to be numbers. A
+		// method's receiver takes slot 0 but 'this' isn't supported
+		int first = function.isMethod ? 1 : 0;
+		for (int i = 0; i < function.parameters.size(); i++) {
+			emit(ALOAD, 1); code.write(1);
+			pushInt(first + i);
+			emit(AALOAD, -1);
+			emit(ASTORE, -1); code.write(2);
+			emit(ALOAD, 1); code.write(2);
+			emit(INSTANCEOF, 0); u2(writer.classRef("java/lang/Double"));
+			jump(IFEQ, -1, deopt);
+			emit(ALOAD, 1); code.write(2);
+			emit(CHECKCAST, 0); u2(writer.classRef("java/lang/Double"));
+			emit(INVOKEVIRTUAL, 1); u2(writer.methodRef("java/lang/Double", "doubleValue", "()D"));
+			scope.locals[first + i] = allocate(NUMBER);
+			scope.types[first + i] = NUMBER;
+			store(NUMBER, scope.locals[first + i]);
+		}
+
+		for (Stmt statement : function.body)
+			statement(statement);
+
+		// falling off the end returns null
+		emit(ACONST_NULL, 1);
+		emit(ARETURN, -1);
+
+		mark(deopt);
+		emit(GETSTATIC, 1); u2(writer.fieldRef(PACKAGE + "JIT", "DEOPT", "Ljava/lang/Object;"));
+		emit(ARETURN, -1);
+
+		byte[] body = takeCode();
+		// branch offsets are 16 bits
+		if (body.length > Short.MAX_VALUE) throw UNSUPPORTED;
+		writer.method(0, "call", "([Ljava/lang/Object;)Ljava/lang/Object;", body, maxStack, nextLocal);
+		return writer.toByteArray(name, CODE);
+	}
+
+	private void statement(Stmt stmt) {
+		if (stmt instanceof Stmt.Expression) {
+			pop(expression(((Stmt.Expression) stmt).expression));
+		} else if (stmt instanceof Stmt.MethodCall) {
+			pop(expression(((Stmt.MethodCall) stmt).call));
+		} else if (stmt instanceof Stmt.Var) {
+			Stmt.Var var = (Stmt.Var) stmt;
+			if (var.initializer == null || var.slot < 0 || var.cell) throw UNSUPPORTED;
+			int type = expression(var.initializer);
+			scope.locals[var.slot] = allocate(type);
+			scope.types[var.slot] = type;
+			store(type, scope.locals[var.slot]);
+		} else if (stmt instanceof Stmt.Block && Compiler.isDoWhile((Stmt.Block) stmt)) {
+			// the body runs before the first check, continue goes on to it
+			Stmt.While whileStmt = (Stmt.While) ((Stmt.Block) stmt).statements.get(1);
+			Label start = new Label();
+			Label next = new Label();
+			Label end = new Label();
+			mark(start);
+			loops.push(new Loop(next, end));
+			statement(whileStmt.body);
+			loops.pop();
+			mark(next);
+			branch(whileStmt.condition, true, start);
+			mark(end);
+		} else if (stmt instanceof Stmt.Block) {
+			for (Stmt statement : ((Stmt.Block) stmt).statements)
+				statement(statement);
+		} else if (stmt instanceof Stmt.If) {
+			Stmt.If ifStmt = (Stmt.If) stmt;
+			Label elseBranch = new Label();
+			Label end = new Label();
+			branch(ifStmt.condition, false, elseBranch);
+			statement(ifStmt.thenBranch);
+			if (ifStmt.elseBranch != null) {
+				jump(GOTO, 0, end);
+				mark(elseBranch);
+				statement(ifStmt.elseBranch);
+			} else {
+				mark(elseBranch);
+			}
+			mark(end);
+		} else if (stmt instanceof Stmt.While) {
+			Stmt.While whileStmt = (Stmt.While) stmt;
+			Label start = new Label();
+			Label end = new Label();
+			mark(start);
+			branch(whileStmt.condition, false, end);
+			loops.push(new Loop(start, end));
+			statement(whileStmt.body);
+			loops.pop();
+			jump(GOTO, 0, start);
+			mark(end);
+		} else if (stmt instanceof Stmt.For) {
+			Stmt.For forStmt = (Stmt.For) stmt;
+			Label start = new Label();
+			Label next = new Label();
+			Label end = new Label();
+			if (forStmt.initializer != null)
+				statement(forStmt.initializer);
+			mark(start);
+			if (forStmt.condition != null)
+				branch(forStmt.condition, false, end);
+			// continue goes on to the increment
+			loops.push(new Loop(next, end));
+			statement(forStmt.body);
+			loops.pop();
+			mark(next);
+			if (forStmt.increment != null)
+				pop(expression(forStmt.increment));
+			jump(GOTO, 0, start);
+			mark(end);
+		} else if (stmt instanceof Stmt.Break) {
+			jump(GOTO, 0, loops.peek().end);
+		} else if (stmt instanceof Stmt.Continue) {
+			jump(GOTO, 0, loops.peek().start);
+		} else if (stmt instanceof Stmt.Return) {
+			Stmt.Return returnStmt = (Stmt.Return) stmt;
+			if (returnStmt.value == null) {
+				emit(ACONST_NULL, 1);
+			} else {
+				box(expression(returnStmt.value));
+			}
+			emit(ARETURN, -1);
+		} else {
+			throw UNSUPPORTED;
+		}
+	}
+
+	// leaves the value of the expression on the stack and returns its type
+	private int expression(Expr expr) {
+		// fused nodes compile as the nodes they replaced
+		if (expr instanceof Expr.Fused)
+			return expression(((Expr.Fused) expr).original);
+		if (expr instanceof Expr.Literal) {
+			Object value = ((Expr.Literal) expr).value;
+			if (value instanceof Double) {
+				pushDouble((double) value);
+				return NUMBER;
+			}
+			if (value instanceof Boolean) {
+				emit((boolean) value ? ICONST_1 : ICONST_0, 1);
+				return BOOLEAN;
+			}
+			throw UNSUPPORTED;
+		}
+
+		if (expr instanceof Expr.Grouping)
+			return expression(((Expr.Grouping) expr).expression);
+
+		if (expr instanceof Expr.Inline) {
+			// the arguments go in the slots the body reads, like locals
+			Expr.Inline inline = (Expr.Inline) expr;
+			for (int i = 0; i < inline.slots.length; i++) {
+				int slot = inline.slots[i];
+				int type = expression(inline.arguments.get(i));
+				scope.locals[slot] = allocate(type);
+				scope.types[slot] = type;
+				store(type, scope.locals[slot]);
+			}
+			return expression(inline.body);
+		}
+
+		if (expr instanceof Expr.Intrinsic) {
+			Expr.Intrinsic intrinsic = (Expr.Intrinsic) expr;
+			if (!Intrinsics.isMath(intrinsic.function)) throw UNSUPPORTED;
+			for (Expr argument : intrinsic.arguments)
+				number(argument);
+			math(intrinsic.function, intrinsic.name.lexeme, intrinsic.arguments.size());
+			return NUMBER;
+		}
+
+		if (expr instanceof Expr.Variable) {
+			Expr.Variable variable = (Expr.Variable) expr;
+			Scope scope = scope(variable.kind);
+			int type = scope.types[variable.slot];
+			load(type, scope.locals[variable.slot]);
+			return type;
+		}
+
+		if (expr instanceof Expr.Assign) {
+			Expr.Assign assign = (Expr.Assign) expr;
+			Scope scope = scope(assign.kind);
+			int type = scope.types[assign.slot];
+			int local = scope.locals[assign.slot];
+			if (expression(assign.value) != type) throw UNSUPPORTED;
+			if (assign.equals.type != TokenType.EQUAL) {
+				if (type != NUMBER) throw UNSUPPORTED;
+				// the value is evaluated before the variable is read
+				load(NUMBER, local);
+				emit(DUP2_X2, 2);
+				emit(POP2, -2);
+				arithmetic(compoundOperator(assign.equals.type));
+			}
+			dup(type);
+			store(type, local);
+			return type;
+		}
+
+		if (expr instanceof Expr.Unary) {
+			Expr.Unary unary = (Expr.Unary) expr;
+			switch (unary.operator.type) {
+				case MINUS:
+					number(unary.right);
+					emit(DNEG, 0);
+					return NUMBER;
+				case PLUS_PLUS:
+				case MINUS_MINUS: {
+					if (!(unary.right instanceof Expr.Variable)) throw UNSUPPORTED;
+					Expr.Variable variable = (Expr.Variable) unary.right;
+					Scope scope = scope(variable.kind);
+					if (scope.types[variable.slot] != NUMBER) throw UNSUPPORTED;
+					int local = scope.locals[variable.slot];
+					int operator = unary.operator.type == TokenType.PLUS_PLUS ? DADD : DSUB;
+					load(NUMBER, local);
+					if (unary.postfix) dup(NUMBER);
+					emit(DCONST_1, 2);
+					emit(operator, -2);
+					if (!unary.postfix) dup(NUMBER);
+					store(NUMBER, local);
+					return NUMBER;
+				}
+				default:
+					return condition(expr);
+			}
+		}
+
+		if (expr instanceof Expr.Binary) {
+			Expr.Binary binary = (Expr.Binary) expr;
+			switch (binary.operator.type) {
+				case PLUS:
+				case MINUS:
+				case STAR:
+				case SLASH:
+				case MODULOS:
+				case STAR_STAR:
+					number(binary.left);
+					number(binary.right);
+					arithmetic(binary.operator.type);
+					return NUMBER;
+				case GREATER:
+				case GREATER_EQUAL:
+				case LESS:
+				case LESS_EQUAL:
+				case EQUAL_EQUAL:
+				case BANG_EQUAL:
+					return condition(expr);
+				default:
+					throw UNSUPPORTED;
+			}
+		}
+
+		if (expr instanceof Expr.Logical)
+			return condition(expr);
+
+		if (expr instanceof Expr.Ternary) {
+			Expr.Ternary ternary = (Expr.Ternary) expr;
+			Label elseBranch = new Label();
+			Label end = new Label();
+			branch(ternary.expr, false, elseBranch);
+			int type = expression(ternary.thenBranch);
+			jump(GOTO, 0, end);
+			// the else branch starts with the stack the then branch started with
+			stack -= size(type);
+			mark(elseBranch);
+			if (expression(ternary.elseBranch) != type) throw UNSUPPORTED;
+			mark(end);
+			return type;
+		}
+
+		throw UNSUPPORTED;
+	}
+
+	private void number(Expr expr) {
+		if (expression(expr) != NUMBER) throw UNSUPPORTED;
+	}
+
+	// turns a boolean valued expression into 1 or 0 on the stack
+	private int condition(Expr expr) {
+		Label isFalse = new Label();
+		Label end = new Label();
+		branch(expr, false, isFalse);
+		emit(ICONST_1, 1);
+		jump(GOTO, 0, end);
+		stack--;
+		mark(isFalse);
+		emit(ICONST_0, 1);
+		mark(end);
+		return BOOLEAN;
+	}
+
+	// jumps to target when the truthiness of the expression is when
+	private void branch(Expr expr, boolean when, Label target) {
+		if (expr instanceof Expr.Fused) {
+			branch(((Expr.Fused) expr).original, when, target);
+			return;
+		}
+		if (expr instanceof Expr.Grouping) {
+			branch(((Expr.Grouping) expr).expression, when, target);
+			return;
+		}
+
+		if (expr instanceof Expr.Unary && ((Expr.Unary) expr).operator.type == TokenType.BANG) {
+			branch(((Expr.Unary) expr).right, !when, target);
+			return;
+		}
+
+		if (expr instanceof Expr.Logical) {
+			Expr.Logical logical = (Expr.Logical) expr;
+			// only booleans, and/or give back the operand itself otherwise
+			if (!isBoolean(logical.left) || !isBoolean(logical.right)) throw UNSUPPORTED;
+			boolean isAnd = logical.operator.type == TokenType.AND;
+			if (isAnd != when) {
+				// 'a and b' is false as soon as a is, 'a or b' true as soon as a is
+				branch(logical.left, when, target);
+				branch(logical.right, when, target);
+			} else {
+				Label skip = new Label();
+				branch(logical.left, !when, skip);
+				branch(logical.right, when, target);
+				mark(skip);
+			}
+			return;
+		}
+
+		if (expr instanceof Expr.Binary) {
+			Expr.Binary binary = (Expr.Binary) expr;
+			TokenType operator = binary.operator.type;
+			switch (operator) {
+				case GREATER:
+				case GREATER_EQUAL:
+				case LESS:
+				case LESS_EQUAL: {
+					number(binary.left);
+					number(binary.right);
+					// comparisons with NaN are false
+					boolean less = operator == TokenType.LESS || operator == TokenType.LESS_EQUAL;
+					emit(less ? DCMPG : DCMPL, -3);
+					int test;
+					switch (operator) {
+						case GREATER: test = when ? IFGT : IFLE; break;
+						case GREATER_EQUAL: test = when ? IFGE : IFLT; break;
+						case LESS: test = when ? IFLT : IFGE; break;
+						default: test = when ? IFLE : IFGT; break;
+					}
+					jump(test, -1, target);
+					return;
+				}
+				case EQUAL_EQUAL:
+				case BANG_EQUAL: {
+					boolean equal = (operator == TokenType.EQUAL_EQUAL) == when;
+					int type = expression(binary.left);
+					if (expression(binary.right) != type) throw UNSUPPORTED;
+					if (type == NUMBER) {
+						// Double.compare agrees with Double.equals, which isEqual uses
+						emit(INVOKESTATIC, -3); u2(writer.methodRef("java/lang/Double", "compare", "(DD)I"));
+						jump(equal ? IFEQ : IFNE, -1, target);
+					} else {
+						jump(equal ? IF_ICMPEQ : IF_ICMPNE, -2, target);
+					}
+					return;
+				}
+				default:
+					break;
+			}
+		}
+
+		int type = expression(expr);
+		if (type == BOOLEAN) {
+			jump(when ? IFNE : IFEQ, -1, target);
+		} else {
+			// numbers are always truthy
+			pop(type);
+			if (when) jump(GOTO, 0, target);
+		}
+	}
+
+	// whether the expression is known to give a boolean without compiling it
+	private boolean isBoolean(Expr expr) {
+		if (expr instanceof Expr.Fused)
+			return isBoolean(((Expr.Fused) expr).original);
+		if (expr instanceof Expr.Grouping)
+			return isBoolean(((Expr.Grouping) expr).expression);
+		if (expr instanceof Expr.Literal)
+			return ((Expr.Literal) expr).value instanceof Boolean;
+		if (expr instanceof Expr.Logical)
+			return true;
+		if (expr instanceof Expr.Unary)
+			return ((Expr.Unary) expr).operator.type == TokenType.BANG;
+		if (expr instanceof Expr.Binary) {
+			switch (((Expr.Binary) expr).operator.type) {
+				case GREATER:
+				case GREATER_EQUAL:
+				case LESS:
+				case LESS_EQUAL:
+				case EQUAL_EQUAL:
+				case BANG_EQUAL:
+					return true;
+				default:
+					return false;
+			}
+		}
+		if (expr instanceof Expr.Variable) {
+			Expr.Variable variable = (Expr.Variable) expr;
+			return scope(variable.kind).types[variable.slot] == BOOLEAN;
+		}
+		return false;
+	}
+
+	private void arithmetic(TokenType operator) {
+		switch (operator) {
+			case PLUS: emit(DADD, -2); break;
+			case MINUS: emit(DSUB, -2); break;
+			case STAR: emit(DMUL, -2); break;
+			case SLASH: emit(DDIV, -2); break;
+			case MODULOS: emit(DREM, -2); break;
+			case STAR_STAR:
+				emit(INVOKESTATIC, -2); u2(writer.methodRef("java/lang/Math", "pow", "(DD)D"));
+				break;
+			default:
+				throw UNSUPPORTED;
+		}
+	}
+
+	// calls the java.lang.Math method of a Math function on the
+	// arguments on the stack
+	private void math(int function, String name, int arguments) {
+		switch (function) {
+			case Intrinsics.LN:
+				emit(INVOKESTATIC, 0); u2(writer.methodRef("java/lang/Math", "log", "(D)D"));
+				break;
+			case Intrinsics.LOG:
+				// log10(value) / log10(base)
+				emit(INVOKESTATIC, 0); u2(writer.methodRef("java/lang/Math", "log10", "(D)D"));
+				emit(DUP2_X2, 2);
+				emit(POP2, -2);
+				emit(INVOKESTATIC, 0); u2(writer.methodRef("java/lang/Math", "log10", "(D)D"));
+				emit(DDIV, -2);
+				break;
+			case Intrinsics.ROUND:
+				emit(INVOKESTATIC, 0); u2(writer.methodRef("java/lang/Math", "round", "(D)J"));
+				emit(L2D, 0);
+				break;
+			default: {
+				String descriptor = arguments == 0 ? "()D" : arguments == 1 ? "(D)D" : "(DD)D";
+				emit(INVOKESTATIC, 2 - 2 * arguments); u2(writer.methodRef("java/lang/Math", name, descriptor));
+			}
+		}
+	}
+
+	private static TokenType compoundOperator(TokenType equals) {
+		switch (equals) {
+			case PLUS_EQUAL: return TokenType.PLUS;
+			case MINUS_EQUAL: return TokenType.MINUS;
+			case STAR_EQUAL: return TokenType.STAR;
+			case SLASH_EQUAL: return TokenType.SLASH;
+			case STAR_STAR_EQUAL: return TokenType.STAR_STAR;
+			case MODULOS_EQUAL: return TokenType.MODULOS;
+			default: throw UNSUPPORTED;
+		}
+	}
+
+	// returns the frame's locals for a resolved variable, globals and
+	// variables in cells aren't supported
+	private Scope scope(int kind) {
+		if (kind != Expr.LOCAL) throw UNSUPPORTED;
+		return scope;
+	}
+
+	private int allocate(int type) {
+		int local = nextLocal;
+		nextLocal += size(type);
+		return local;
+	}
+
+	private static int size(int type) {
+		return type == NUMBER ? 2 : 1;
+	}
+
+	private void load(int type, int local) {
+		if (type == 0) throw UNSUPPORTED;
+		if (type == NUMBER) emit(DLOAD, 2); else emit(ILOAD, 1);
+		local(local);
+	}
+
+	private void store(int type, int local) {
+		if (type == NUMBER) emit(DSTORE, -2); else emit(ISTORE, -1);
+		local(local);
+	}
+
+	private void local(int local) {
+		if (local > 255) throw UNSUPPORTED;
+		code.write(local);
+	}
+
+	private void dup(int type) {
+		if (type == NUMBER) emit(DUP2, 2); else emit(DUP, 1);
+	}
+
+	private void pop(int type) {
+		if (type == NUMBER) emit(POP2, -2); else emit(POP, -1);
+	}
+
+	private void box(int type) {
+		if (type == NUMBER) {
+			emit(INVOKESTATIC, -1);
+			u2(writer.methodRef("java/lang/Double", "valueOf", "(D)Ljava/lang/Double;"));
+		} else {
+			emit(INVOKESTATIC, 0);
+			u2(writer.methodRef("java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;"));
+		}
+	}
+
+	private void pushDouble(double value) {
+		if (Double.doubleToRawLongBits(value) == 0L) {
+			emit(DCONST_0, 2);
+		} else if (value == 1.0) {
+			emit(DCONST_1, 2);
+		} else {
+			emit(LDC2_W, 2);
+			u2(writer.doubleConstant(value));
+		}
+	}
+
+	private void pushInt(int value) {
+		if (value <= 5) {
+			emit(ICONST_0 + value, 1);
+		} else if (value <= Byte.MAX_VALUE) {
+			emit(BIPUSH, 1); code.write(value);
+		} else {
+			emit(SIPUSH, 1); u2(value);
+		}
+	}
+
+	// writes an opcode and tracks how it changes the stack
+	private void emit(int opcode, int effect) {
+		code.write(opcode);
+		stack += effect;
+		maxStack = Math.max(maxStack, stack);
+	}
+
+	private void u2(int value) {
+		code.write(value >> 8);
+		code.write(value);
+	}
+
+	private void jump(int opcode, int effect, Label target) {
+		target.branches.add(code.size());
+		labels.add(target);
+		emit(opcode, effect);
+		u2(0);
+	}
+
+	private void mark(Label label) {
+		label.position = code.size();
+	}
+
+	// returns the code written so far with the branch offsets filled in
+	private byte[] takeCode() {
+		byte[] bytes = code.toByteArray();
+		for (Label label : labels) {
+			for (int branch : label.branches) {
+				int offset = label.position - branch;
+				bytes[branch + 1] = (byte) (offset >> 8);
+				bytes[branch + 2] = (byte) offset;
+			}
+			label.branches.clear();
+		}
+		labels.clear();
+		code.reset();
+		stack = 0;
+		return bytes;
+	}
+}
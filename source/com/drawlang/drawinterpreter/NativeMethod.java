@@ -0,0 +1,9 @@
+package com.drawlang.drawinterpreter;
+
+// a built-in method of a native type such as lists or the canvas. One
+// instance serves every receiver of the type, which is passed in along
+// with the token of the property for error messages
+
+interface NativeMethod<T extends DrawInstance> {
+	Object call(T receiver, Interpreter interpreter, Token name, Object[] arguments);
+}
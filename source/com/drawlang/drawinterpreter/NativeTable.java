@@ -0,0 +1,77 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.*;
+
+// the built-in methods of a native type, built once per type. Methods
+// are numbered in the order they are added and looked up by the symbol
+// of their name once, call sites then keep the entry they found
+
+class NativeTable<T extends DrawInstance> {
+	static class Entry<T extends DrawInstance> {
+		final int id;
+		final String name;
+		final int arity;
+		private final NativeMethod<T> method;
+
+		private Entry(int id, String name, int arity, NativeMethod<T> method) {
+			this.id = id;
+			this.name = name;
+			this.arity = arity;
+			this.method = method;
+		}
+
+		// the receiver has to be of the type the table was built for,
+		// call sites check it has this table before calling
+		@SuppressWarnings("unchecked")
+		Object call(DrawInstance receiver, Interpreter interpreter, Token name, Object[] arguments) {
+			return method.call((T) receiver, interpreter, name, arguments);
+		}
+	}
+
+	// method ids indexed by symbol, -1 where the type has no such method
+	private int[] ids = new int[0];
+	private final List<Entry<T>> entries = new ArrayList<>();
+
+	NativeTable<T> add(String name, int arity, NativeMethod<T> method) {
+		int symbol = Symbols.intern(name);
+		if (symbol >= ids.length) {
+			int length = ids.length;
+			ids = Arrays.copyOf(ids, symbol + 1);
+			Arrays.fill(ids, length, ids.length, -1);
+		}
+		ids[symbol] = entries.size();
+		entries.add(new Entry<>(entries.size(), name, arity, method));
+		return this;
+	}
+
+	// returns the id of the method, or -1 if the type has no such method
+	int idOf(int symbol) {
+		return symbol >= 0 && symbol < ids.length ? ids[symbol] : -1;
+	}
+
+	Entry<T> entry(int id) {
+		return entries.get(id);
+	}
+
+	// returns the entry for the symbol, or null if there is none
+	Entry<T> lookUp(int symbol) {
+		int id = idOf(symbol);
+		return id < 0 ? null : entries.get(id);
+	}
+
+	// wraps a method read as a value, such as 'var add = list.add;'
+	DrawCallable bind(T receiver, int id, Token name) {
+		Entry<T> entry = entries.get(id);
+		return new DrawCallable() {
+			@Override
+			public int arity() {
+				return entry.arity;
+			}
+
+			@Override
+			public Object call(Interpreter interpreter, Object[] arguments) {
+				return entry.call(receiver, interpreter, name, arguments);
+			}
+		};
+	}
+}
@@ -0,0 +1,152 @@
+package com.drawlang.drawinterpreter;
+
+// instruction set of the bytecode vm. Each instruction is an int in a
+// chunk's code array, followed by its operands. Operands named 'token'
+// are constant pool indices of the token used for error reporting
+
+final class OpCode {
+	// pushes constant [index]
+	static final int CONSTANT = 0;
+	static final int NULL = 1;
+	static final int TRUE = 2;
+	static final int FALSE = 3;
+	static final int POP = 4;
+
+	// [slot] - reads and writes a local in the frame, set leaves the
+	// value on the stack and define pops it
+	static final int GET_LOCAL = 5;
+	static final int SET_LOCAL = 6;
+	static final int DEFINE_LOCAL = 7;
+	// [slot] - the same for a local closures capture, which the frame
+	// holds in a cell. Define stores a new cell
+	static final int GET_CELL = 8;
+	static final int SET_CELL = 9;
+	static final int DEFINE_CELL = 10;
+	// [index] - reads and writes a cell the running function captured
+	static final int GET_CAPTURED = 11;
+	static final int SET_CAPTURED = 12;
+
+	// [slot, token] - reads and writes a slot of the global table
+	static final int GET_GLOBAL = 13;
+	static final int SET_GLOBAL = 14;
+	// [token] - defines a global by name
+	static final int DEFINE_GLOBAL = 15;
+
+	// [token] - object.name and object.name = value
+	static final int GET_PROPERTY = 16;
+	static final int SET_PROPERTY = 17;
+	// [token] - object[index] and object[index] = value
+	static final int GET_INDEX = 18;
+	static final int SET_INDEX = 19;
+
+	// [token] - binary operators, pop right then left
+	static final int ADD = 20;
+	static final int SUBTRACT = 21;
+	static final int MULTIPLY = 22;
+	static final int DIVIDE = 23;
+	static final int MODULOS = 24;
+	static final int POWER = 25;
+	static final int GREATER = 26;
+	static final int GREATER_EQUAL = 27;
+	static final int LESS = 28;
+	static final int LESS_EQUAL = 29;
+	// no operands
+	static final int EQUAL = 30;
+	static final int NOT_EQUAL = 31;
+	static final int NOT = 32;
+	// [token]
+	static final int NEGATE = 33;
+
+	// [token, delta, postfix] - replaces a number with the value the
+	// expression produces and the value to store, for ++ and --
+	static final int INCREMENT = 34;
+	// [token] - pops the current value of a variable and the right hand
+	// side of a compound assignment such as +=, and pushes the result
+	static final int COMPOUND = 35;
+
+	// [target] - absolute jumps
+	static final int JUMP = 36;
+	static final int JUMP_IF_FALSE = 37;
+	// keep the value if jumping, otherwise pop it - used by and/or
+	static final int JUMP_IF_FALSE_OR_POP = 38;
+	static final int JUMP_IF_TRUE_OR_POP = 39;
+
+	// [argument count, token]
+	static final int CALL = 40;
+	// [chunk] - creates a function holding the cells it captures
+	static final int CLOSURE = 41;
+	static final int RETURN = 42;
+
+	// [token, slot] - checks the superclass and stores it in a new cell
+	// for the methods to capture
+	static final int SUPERCLASS = 43;
+	// [class] - builds a class from the compiled methods
+	static final int CLASS = 44;
+	// [token] - pops the superclass and this, and looks up a method on
+	// the superclass
+	static final int GET_SUPER = 45;
+
+	// [size] - builds an array from the values on the stack
+	static final int ARRAY = 46;
+	// [token, message] - raises a runtime error
+	static final int ERROR = 47;
+	// [argument count, token] - a call whose value is returned, runs a
+	// compiled callee in place of the current function
+	static final int TAIL_CALL = 48;
+
+	// [token, name] - object.name op= value and object[index] op= value,
+	// pop the value and index and replace the object with the result
+	static final int COMPOUND_PROPERTY = 49;
+	static final int COMPOUND_INDEX = 50;
+	// [token, delta, postfix, name] - ++ and -- on object.name and
+	// object[index], replace the object with the value of the expression
+	static final int INCREMENT_PROPERTY = 51;
+	static final int INCREMENT_INDEX = 52;
+
+	// [function, argument count, token] - runs one of the functions in
+	// Intrinsics on the arguments on the stack
+	static final int INTRINSIC = 53;
+
+	// names used when disassembling
+	static final String[] NAMES = {
+		"CONSTANT", "NULL", "TRUE", "FALSE", "POP",
+		"GET_LOCAL", "SET_LOCAL", "DEFINE_LOCAL",
+		"GET_CELL", "SET_CELL", "DEFINE_CELL",
+		"GET_CAPTURED", "SET_CAPTURED",
+		"GET_GLOBAL", "SET_GLOBAL", "DEFINE_GLOBAL",
+		"GET_PROPERTY", "SET_PROPERTY", "GET_INDEX", "SET_INDEX",
+		"ADD", "SUBTRACT", "MULTIPLY", "DIVIDE", "MODULOS", "POWER",
+		"GREATER", "GREATER_EQUAL", "LESS", "LESS_EQUAL",
+		"EQUAL", "NOT_EQUAL", "NOT", "NEGATE",
+		"INCREMENT", "COMPOUND",
+		"JUMP", "JUMP_IF_FALSE", "JUMP_IF_FALSE_OR_POP", "JUMP_IF_TRUE_OR_POP",
+		"CALL", "CLOSURE", "RETURN",
+		"SUPERCLASS", "CLASS", "GET_SUPER",
+		"ARRAY", "ERROR", "TAIL_CALL",
+		"COMPOUND_PROPERTY", "COMPOUND_INDEX", "INCREMENT_PROPERTY", "INCREMENT_INDEX",
+		"INTRINSIC"
+	};
+
+	// number of operands that follow each instruction
+	static final int[] OPERANDS = {
+		1, 0, 0, 0, 0,
+		1, 1, 1,
+		1, 1, 1,
+		1, 1,
+		2, 2, 1,
+		1, 1, 1, 1,
+		1, 1, 1, 1, 1, 1,
+		1, 1, 1, 1,
+		0, 0, 0, 1,
+		3, 1,
+		1, 1, 1, 1,
+		2, 1, 0,
+		2, 1, 1,
+		1, 2, 2,
+		2, 2, 4, 4,
+		3
+	};
+
+	private OpCode() {
+	}
+}
@@ -57,6 +57,8 @@ public class Parser {
 			// checks if token is a variable declaration
 			if (match(VAR))
 				return varDeclaration();
+			if (match(CONST))
+				return constDeclaration();
 
 			// if not then return previous statment code
 			return statement();
@@ -160,21 +162,8 @@ public class Parser {
 		consume(RIGHT_PAREN, "Expect ')' after for clauses.");
 		loops++;
 		Stmt body = statement();
-
-		// if there is an incrementer add it to the end of the body
-		if (increment != null)
-			body = new Stmt.Block(Arrays.asList(body, new Stmt.Expression(increment)));
-
-		// if there is no condition it will loop infinitely
-		if (condition == null)
-			condition = new Expr.Literal(true);
-		body = new Stmt.While(condition, body);
-
-		// if there is an initializer then add it to the start of the body
-		if (initializer != null)
-			body = new Stmt.Block(Arrays.asList(initializer, body));
 		loops--;
-		return body;
+		return new Stmt.For(initializer, condition, increment, body);
 
 	}
 
@@ -222,6 +211,19 @@ public class Parser {
 		return new Stmt.Var(name, initializer);
 	}
 
+	private Stmt constDeclaration() {
+		// like a variable but it must be initialized and can not be
+		// assigned to, const size = 10;
+		Token name = consume(IDENTIFIER, "Expect constant name.");
+		consume(EQUAL, "Expect '=' after constant name.");
+		Expr initializer = expression();
+
+		consume(SEMICOLON, "Expect ';' after constant declaration.");
+		Stmt.Var constant = new Stmt.Var(name, initializer);
+		constant.constant = true;
+		return constant;
+	}
+
 	private Stmt doWhileStatement() {
 		// syntactic sugar around a while statement
 		loops++;
@@ -232,7 +234,8 @@ public class Parser {
 		consume(RIGHT_PAREN, "Expect ')' after condition.");
 		consume(SEMICOLON, "Expect ';' after do-while statement");
 		loops--;
-		return new Stmt.Block(Arrays.asList(body, new Stmt.While(condition, body)));
+		// in a list the passes after the resolver can remove statements from
+		return new Stmt.Block(new ArrayList<>(Arrays.asList(body, new Stmt.While(condition, body))));
 	}
 
 	private Stmt whileStatement() {
@@ -315,9 +318,9 @@ public class Parser {
 		Expr expr = ternary();
 
 		if (check(EQUAL) && expr instanceof Expr.Get) {
-			match(EQUAL);
+			Token equals = advance();
 			Expr.Get get = (Expr.Get) expr;
-			return new Expr.Set(get.object, get.name, get.index, assignment());
+			return new Expr.Set(get.object, get.name, get.index, assignment(), equals);
 		}
 
 		// checks if is an assinment
@@ -332,7 +335,7 @@ public class Parser {
 				// checks if left expression is a get instance
 			} else if (expr instanceof Expr.Get) {
 				Expr.Get get = (Expr.Get) expr;
-				return new Expr.Set(get.object, get.name, get.index, value);
+				return new Expr.Set(get.object, get.name, get.index, value, equals);
 			}
 
 			// if not a variable then raise an error
@@ -497,7 +500,11 @@ public class Parser {
 			return new Expr.Unary(operator, left, true);
 		}
 
-		return call();
+		// a[i]++ and obj.field--
+		Expr expr = call();
+		if (expr instanceof Expr.Get && match(PLUS_PLUS, MINUS_MINUS))
+			return new Expr.Unary(previous(), expr, true);
+		return expr;
 	}
 
 	private Expr finishCall(Expr callee) {
@@ -688,6 +695,7 @@ public class Parser {
 				case CLASS:
 				case FUNCTION:
 				case VAR:
+				case CONST:
 				case FOR:
 				case IF:
 				case WHILE:
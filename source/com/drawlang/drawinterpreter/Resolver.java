@@ -5,15 +5,67 @@ import java.util.*;
 import com.drawlang.drawinterpreter.Expr.ArrayLiteral;
 
 class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-	private final Interpreter interpreter;
 	// keeps track of scopes that are currently in scope, the string is
 	// the variable name and the boolean is to see if it is given a value
 	private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+	// parallel to scopes, maps each variable name to the local it is
+	private final Stack<Map<String, Variable>> variables = new Stack<>();
+	// function whose frame the variables being declared live in, every
+	// scope of a function shares its one frame
+	private Context context = new Context(null, null);
 
 	private FunctionType currentFunction = FunctionType.NONE;
+	// counted loops being resolved by the scope holding their counter,
+	// an assignment to the counter in the loop stops it being counted
+	private final Map<Map<String, Boolean>, Stmt.For> counters = new IdentityHashMap<>();
+	// consts declared at the top level of the script so far
+	private final Map<String, Stmt.Var> constants = new HashMap<>();
+	// names of every variable, const, function and class declared at the
+	// top level so far
+	private final Set<String> declaredGlobals = new HashSet<>();
+	// the run's globals, which give each global name its slot
+	private final Globals globals;
+
+	Resolver(Globals globals) {
+		this.globals = globals;
+	}
+
+	// a local variable and the frame it lives in
+	private static class Variable {
+		final int slot;
+		final Context context;
+		// the statement declaring it, the function for its parameters and
+		// receiver, or null for 'super', which always lives in a cell
+		final Object declaration;
+		// set when a closure captures it, it then lives in a cell
+		boolean captured = false;
+		// uses in the declaring function, which go through the cell
+		// once a closure captures it
+		final List<Expr> uses = new ArrayList<>();
+
+		Variable(int slot, Context context, Object declaration) {
+			this.slot = slot;
+			this.context = context;
+			this.declaration = declaration;
+		}
+	}
 
-	Resolver(Interpreter interpreter) {
-		this.interpreter = interpreter;
+	// a function being resolved, or the script's top level blocks
+	private static class Context {
+		final Context enclosing;
+		final Expr.Function function;
+		// slots given out so far in the frame
+		int size = 0;
+		final List<Variable> locals = new ArrayList<>();
+		// variables of enclosing functions the function captures, by
+		// their index in its cells, and where each cell comes from
+		final Map<Variable, Integer> captured = new HashMap<>();
+		final List<Integer> sources = new ArrayList<>();
+
+		Context(Context enclosing, Expr.Function function) {
+			this.enclosing = enclosing;
+			this.function = function;
+		}
 	}
 
 	private enum FunctionType {
@@ -26,6 +78,14 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
 	private ClassType currentClass = ClassType.NONE;
 
+	// resolves the script and returns the number of slots its frame
+	// needs for the locals of top level blocks
+	int resolveScript(List<Stmt> statements) {
+		resolve(statements);
+		finish(context);
+		return context.size;
+	}
+
 	void resolve(List<Stmt> statements) {
 		for (Stmt statement : statements) {
 			resolve(statement);
@@ -38,22 +98,28 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		FunctionType enclosingFunction = currentFunction;
 		currentFunction = type;
 		// introduces new scope for function
-		beginScope();
+		beginFunction(stmt.function);
+		// methods keep their receiver in the first slot of the frame
+		if (type == FunctionType.METHOD || type == FunctionType.INITIALIZER) {
+			declareImplicit("this", stmt.function);
+			stmt.function.isMethod = true;
+		}
 		for (Token param : stmt.function.parameters) {
 			// binds all of the functions parameters
 			// so they can be used like variables
-			declare(param);
+			declare(param, stmt.function);
 			define(param);
 		}
 
 		resolve(stmt.function.body);
-		endScope();
+		endFunction();
 		currentFunction = enclosingFunction;
 	}
 
 	@Override
 	public Void visitBlockStmt(Stmt.Block stmt) {
-		// {} introduces new scope for statement inside
+		// {} introduces new scope for statement inside, its variables
+		// get slots in the frame of the function around it
 		beginScope();
 		resolve(stmt.statements);
 		endScope();
@@ -62,7 +128,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
 	@Override
 	public Void visitClassStmt(Stmt.Class stmt) {
-		declare(stmt.name);
+		stmt.slot = declare(stmt.name, stmt);
 		define(stmt.name);
 		ClassType enclosingClass = currentClass;
 		currentClass = ClassType.CLASS;
@@ -73,13 +139,11 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 			resolve(stmt.superclass);
 			// adds superclass to scope to reference it
 			beginScope();
-			scopes.peek().put("super", true);
+			stmt.superSlot = declareImplicit("super", null);
 		}
 
-		// defines this keyword in local scope
-		beginScope();
-		scopes.peek().put("this", true);
-
+		// 'this' is declared in each method's own scope, static
+		// methods are bound to the class the same way
 		for (Stmt.Function method : stmt.methods) {
 			FunctionType declaration = FunctionType.METHOD;
 			if (method.name.lexeme.equals("init"))
@@ -89,14 +153,9 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		}
 
 		for (Stmt.Function method : stmt.classMethods) {
-			beginScope();
-			scopes.peek().put("this", true);
 			resolveFunction(method, FunctionType.METHOD);
-			endScope();
 		}
 
-		endScope();
-
 		if (stmt.superclass != null)
 			endScope();
 
@@ -113,7 +172,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 	@Override
 	public Void visitFunctionStmt(Stmt.Function stmt) {
 		// declares and defines function name
-		declare(stmt.name);
+		stmt.slot = declare(stmt.name, stmt);
 		define(stmt.name);
 
 		resolveFunction(stmt, FunctionType.FUNCTION);
@@ -143,20 +202,179 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 				Draw.error(stmt.keyword, "Cannot return a value from an initializer.");
 			}
 			resolve(stmt.value);
+			if (currentFunction != FunctionType.NONE)
+				markTailCalls(stmt.value);
 		}
 		return null;
 	}
 
+	// marks the calls whose value is the value returned, looking through
+	// brackets, both branches of a ternary and the right side of and/or
+	private void markTailCalls(Expr expr) {
+		if (expr instanceof Expr.Call) {
+			((Expr.Call) expr).tail = true;
+		} else if (expr instanceof Expr.Grouping) {
+			markTailCalls(((Expr.Grouping) expr).expression);
+		} else if (expr instanceof Expr.Ternary) {
+			markTailCalls(((Expr.Ternary) expr).thenBranch);
+			markTailCalls(((Expr.Ternary) expr).elseBranch);
+		} else if (expr instanceof Expr.Logical) {
+			markTailCalls(((Expr.Logical) expr).right);
+		}
+	}
+
 	@Override
 	public Void visitVarStmt(Stmt.Var stmt) {
-		declare(stmt.name);
+		stmt.slot = declare(stmt.name, stmt);
 		if (stmt.initializer != null) {
 			resolve(stmt.initializer);
 		}
+		if (stmt.constant) {
+			// folded now so uses of the const can be given its value
+			stmt.initializer = Folder.fold(stmt.initializer);
+			if (scopes.isEmpty())
+				constants.put(stmt.name.lexeme, stmt);
+		}
 		define(stmt.name);
 		return null;
 	}
 
+	@Override
+	public Void visitForStmt(Stmt.For stmt) {
+		// the variable the initializer declares lives in a scope
+		// around the loop
+		boolean declares = stmt.initializer instanceof Stmt.Var;
+		if (declares)
+			beginScope();
+		if (stmt.initializer != null)
+			resolve(stmt.initializer);
+		// the increment is the one place a counted loop's counter
+		// is assigned, so it is resolved before the counter is watched
+		if (stmt.increment != null)
+			resolve(stmt.increment);
+
+		stmt.counted = isCounted(stmt);
+		if (stmt.counted)
+			counters.put(scopes.peek(), stmt);
+		if (stmt.condition != null)
+			resolve(stmt.condition);
+		resolve(stmt.body);
+		if (declares) {
+			counters.remove(scopes.peek());
+			// a counter closures capture lives in a cell
+			Stmt.Var counter = (Stmt.Var) stmt.initializer;
+			if (variables.peek().get(counter.name.lexeme).captured)
+				stmt.counted = false;
+			endScope();
+		}
+		return null;
+	}
+
+	// checks for loops shaped like for (var i = a; i < b; i++), where the
+	// increment adds a constant step to the counter
+	private static boolean isCounted(Stmt.For stmt) {
+		if (!(stmt.initializer instanceof Stmt.Var) || !(stmt.condition instanceof Expr.Binary))
+			return false;
+		Stmt.Var counter = (Stmt.Var) stmt.initializer;
+		Expr.Binary condition = (Expr.Binary) stmt.condition;
+		switch (condition.operator.type) {
+			case LESS:
+			case LESS_EQUAL:
+			case GREATER:
+			case GREATER_EQUAL:
+				break;
+			default:
+				return false;
+		}
+		if (counter.initializer == null || !isVariable(condition.left, counter))
+			return false;
+
+		stmt.step = step(stmt.increment, counter);
+		return stmt.step != 0;
+	}
+
+	// returns the constant the increment adds to the counter, or 0 if it
+	// does anything else
+	private static double step(Expr increment, Stmt.Var counter) {
+		if (increment instanceof Expr.Unary) {
+			Expr.Unary unary = (Expr.Unary) increment;
+			if (isVariable(unary.right, counter)) {
+				if (unary.operator.type == TokenType.PLUS_PLUS)
+					return 1;
+				if (unary.operator.type == TokenType.MINUS_MINUS)
+					return -1;
+			}
+		} else if (increment instanceof Expr.Assign) {
+			Expr.Assign assign = (Expr.Assign) increment;
+			if (!assign.name.lexeme.equals(counter.name.lexeme))
+				return 0;
+			switch (assign.equals.type) {
+				case PLUS_EQUAL:
+					return number(assign.value);
+				case MINUS_EQUAL:
+					return -number(assign.value);
+				case EQUAL:
+					// i = i + step and i = i - step
+					if (assign.value instanceof Expr.Binary) {
+						Expr.Binary binary = (Expr.Binary) assign.value;
+						if (!isVariable(binary.left, counter))
+							return 0;
+						if (binary.operator.type == TokenType.PLUS)
+							return number(binary.right);
+						if (binary.operator.type == TokenType.MINUS)
+							return -number(binary.right);
+					}
+					return 0;
+				default:
+					return 0;
+			}
+		}
+		return 0;
+	}
+
+	private static boolean isVariable(Expr expr, Stmt.Var var) {
+		return expr instanceof Expr.Variable && ((Expr.Variable) expr).name.lexeme.equals(var.name.lexeme);
+	}
+
+	private static double number(Expr expr) {
+		if (expr instanceof Expr.Variable && ((Expr.Variable) expr).constant != null)
+			expr = ((Expr.Variable) expr).constant;
+		if (expr instanceof Expr.Literal && ((Expr.Literal) expr).value instanceof Double)
+			return (double) ((Expr.Literal) expr).value;
+		return 0;
+	}
+
+	// returns the const declaration the name refers to here, or null if it
+	// is not a const
+	private Stmt.Var constant(Token name) {
+		Object declaration = null;
+		for (int i = scopes.size() - 1; i >= 0; i--) {
+			Variable variable = variables.get(i).get(name.lexeme);
+			if (variable != null) {
+				declaration = variable.declaration;
+				break;
+			}
+		}
+		if (declaration == null)
+			declaration = constants.get(name.lexeme);
+		if (declaration instanceof Stmt.Var && ((Stmt.Var) declaration).constant)
+			return (Stmt.Var) declaration;
+		return null;
+	}
+
+	// stops a counted loop being counted when its body assigns the
+	// counter, the only variable in the loop's own scope
+	private void assigned(Token name) {
+		for (int i = scopes.size() - 1; i >= 0; i--) {
+			if (scopes.get(i).containsKey(name.lexeme)) {
+				Stmt.For loop = counters.get(scopes.get(i));
+				if (loop != null)
+					loop.counted = false;
+				return;
+			}
+		}
+	}
+
 	@Override
 	public Void visitWhileStmt(Stmt.While stmt) {
 		// similar to if
@@ -180,6 +398,9 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		// resolves any variables the value could refer to
 		resolve(expr.value);
 		// resolves variable value is being assigned to
+		if (constant(expr.name) != null)
+			Draw.error(expr.name, "Cannot assign to a constant.");
+		assigned(expr.name);
 		resolveLocal(expr, expr.name);
 		return null;
 	}
@@ -197,13 +418,13 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		FunctionType enclosingFunction = currentFunction;
 		currentFunction = FunctionType.FUNCTION;
 
-		beginScope();
+		beginFunction(expr);
 		for (Token param : expr.parameters) {
-			declare(param);
+			declare(param, expr);
 			define(param);
 		}
 		resolve(expr.body);
-		endScope();
+		endFunction();
 		currentFunction = enclosingFunction;
 		return null;
 	}
@@ -266,6 +487,8 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 			Draw.error(expr.keyword, "Cannot use 'super'in a class with no superclass.");
 		}
 		resolveLocal(expr, expr.keyword);
+		if (currentClass != ClassType.NONE)
+			resolve(expr.self);
 		return null;
 	}
 
@@ -284,6 +507,15 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 	@Override
 	public Void visitUnaryExpr(Expr.Unary expr) {
 		resolve(expr.right);
+		// ++ and -- assign the variable
+		TokenType operator = expr.operator.type;
+		if ((operator == TokenType.PLUS_PLUS || operator == TokenType.MINUS_MINUS)
+				&& expr.right instanceof Expr.Variable) {
+			Expr.Variable variable = (Expr.Variable) expr.right;
+			if (constant(variable.name) != null)
+				Draw.error(variable.name, "Cannot assign to a constant.");
+			assigned(variable.name);
+		}
 		return null;
 	}
 
@@ -302,6 +534,13 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 			Draw.error(expr.name, "Cannot read local variable in its own initializer.");
 		}
 
+		// a const with a constant value is inlined by the Folder, so the
+		// variable is never read or captured
+		Stmt.Var constant = constant(expr.name);
+		if (constant != null && Folder.isConstant(constant.initializer)) {
+			expr.constant = (Expr.Literal) constant.initializer;
+			return null;
+		}
 		resolveLocal(expr, expr.name);
 		return null;
 	}
@@ -317,24 +556,104 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 	private void beginScope() {
 		// adds new scope, allows nesting
 		scopes.push(new HashMap<String, Boolean>());
+		variables.push(new HashMap<String, Variable>());
 	}
 
 	private void endScope() {
 		scopes.pop(); // exits scope
+		variables.pop();
 	}
 
-	private void declare(Token name) {
-		// if it's global then there is no need to resolve this
-		if (scopes.isEmpty())
-			return;
+	// starts a function body, whose variables live in a frame of its own
+	private void beginFunction(Expr.Function function) {
+		context = new Context(context, function);
+		beginScope();
+	}
+
+	// records the frame size of the function and the cells it captures
+	private void endFunction() {
+		endScope();
+		Expr.Function function = context.function;
+		function.size = context.size;
+		function.captured = toArray(context.sources);
+		function.cellParameters = finish(context);
+		context = context.enclosing;
+	}
+
+	// moves the variables of a finished frame that closures captured into
+	// cells and returns the slots of such parameters
+	private static int[] finish(Context context) {
+		List<Integer> parameters = new ArrayList<>();
+		for (Variable variable : context.locals) {
+			if (!variable.captured)
+				continue;
+			for (Expr use : variable.uses)
+				locate(use, Expr.CELL, variable.slot);
+
+			Object declaration = variable.declaration;
+			if (declaration instanceof Stmt.Var)
+				((Stmt.Var) declaration).cell = true;
+			else if (declaration instanceof Stmt.Function)
+				((Stmt.Function) declaration).cell = true;
+			else if (declaration instanceof Stmt.Class)
+				((Stmt.Class) declaration).cell = true;
+			else if (declaration instanceof Expr.Function)
+				parameters.add(variable.slot);
+		}
+		return toArray(parameters);
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		if (list.isEmpty())
+			return Expr.Function.NO_SLOTS;
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = list.get(i);
+		return array;
+	}
+
+	private int declare(Token name, Object declaration) {
+		// if it's global then there is no need to resolve this. Globals
+		// may be declared again, but not with the name of a const or as
+		// a const with the name of another global
+		if (scopes.isEmpty()) {
+			if (constants.containsKey(name.lexeme))
+				Draw.error(name, "Cannot redeclare a constant.");
+			else if (declaration instanceof Stmt.Var && ((Stmt.Var) declaration).constant
+					&& declaredGlobals.contains(name.lexeme))
+				Draw.error(name, "Cannot redeclare a global as a constant.");
+			declaredGlobals.add(name.lexeme);
+			return -1;
+		}
 
 		// adds to innermost scope to shadow outer variables
 		Map<String, Boolean> scope = scopes.peek();
 		// raises error if redeclaring variable with same name in
 		// same scope
-		if (scope.containsKey(name.lexeme))
+		if (scope.containsKey(name.lexeme)) {
 			Draw.error(name, "Variable with this name already declared in this scope.");
+			return variables.peek().get(name.lexeme).slot;
+		}
 		scope.put(name.lexeme, false);
+		return local(name.lexeme, declaration).slot;
+	}
+
+	// declares and defines names such as 'this' and 'super' that the
+	// interpreter binds itself rather than the user
+	private int declareImplicit(String name, Object declaration) {
+		scopes.peek().put(name, true);
+		Variable variable = local(name, declaration);
+		if (declaration == null)
+			variable.captured = true;
+		return variable.slot;
+	}
+
+	// gives the variable the next free slot in the current frame
+	private Variable local(String name, Object declaration) {
+		Variable variable = new Variable(context.size++, context, declaration);
+		context.locals.add(variable);
+		variables.peek().put(name, variable);
+		return variable;
 	}
 
 	private void define(Token name) {
@@ -343,17 +662,95 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		scopes.peek().put(name.lexeme, true); // true marks it as initialized
 	}
 
-	private void resolveLocal(Expr expr, Token name) {
+	private void resolveLocal(Expr site, Token name) {
 		// starts at inntermost scope and goes outwards
-		// if not found then assumes it is global
+		// if not found then assumes it is global and gives
+		// it a slot in the global table
 		for (int i = scopes.size() - 1; i >= 0; i--) {
-			if (scopes.get(i).containsKey(name.lexeme)) {
-				// if found passes in distance between scope the variable is
-				// located in and the innermost scope to the interpreter
-				interpreter.resolve(expr, scopes.size() - 1 - i);
+			Variable variable = variables.get(i).get(name.lexeme);
+			if (variable != null) {
+				// a variable of the current function is read from its frame,
+				// one of an enclosing function from the cells captured
+				if (variable.context == context) {
+					variable.uses.add(site);
+					locate(site, Expr.LOCAL, variable.slot);
+				} else {
+					locate(site, Expr.CAPTURED, capture(context, variable));
+				}
 				return;
 			}
 		}
+		locate(site, Expr.GLOBAL, globals.slot(name.symbol));
+	}
+
+	// returns the index of the variable among the cells the function of
+	// context captures, capturing it through every function in between
+	// the first time
+	private static int capture(Context context, Variable variable) {
+		Integer index = context.captured.get(variable);
+		if (index != null)
+			return index;
+		variable.captured = true;
+		int source = context.enclosing == variable.context ? variable.slot
+				: -1 - capture(context.enclosing, variable);
+		index = context.sources.size();
+		context.sources.add(source);
+		context.captured.put(variable, index);
+		return index;
+	}
+
+	private static void locate(Expr site, int kind, int slot) {
+		if (site instanceof Expr.Variable) {
+			((Expr.Variable) site).kind = kind;
+			((Expr.Variable) site).slot = slot;
+		} else if (site instanceof Expr.Assign) {
+			((Expr.Assign) site).kind = kind;
+			((Expr.Assign) site).slot = slot;
+		} else if (site instanceof Expr.This) {
+			((Expr.This) site).kind = kind;
+			((Expr.This) site).slot = slot;
+		} else if (site instanceof Expr.Super) {
+			((Expr.Super) site).kind = kind;
+			((Expr.Super) site).slot = slot;
+		}
+	}
+
+	// inlined calls, intrinsics, fused nodes and method call statements
+	// are made by the passes after resolving, so the resolver never
+	// sees them
+	@Override
+	public Void visitMethodCallStmt(Stmt.MethodCall stmt) {
+		return null;
+	}
+
+	@Override
+	public Void visitInlineExpr(Expr.Inline expr) {
+		return null;
+	}
+
+	@Override
+	public Void visitIntrinsicExpr(Expr.Intrinsic expr) {
+		return null;
+	}
+
+	@Override
+	public Void visitIncrementLocalExpr(Expr.IncrementLocal expr) {
+		return null;
+	}
+
+	@Override
+	public Void visitCompoundLocalExpr(Expr.CompoundLocal expr) {
+		return null;
+	}
+
+	@Override
+	public Void visitIndexLocalExpr(Expr.IndexLocal expr) {
+		return null;
+	}
+
+	@Override
+	public Void visitCompareLocalExpr(Expr.CompareLocal expr) {
+		return null;
 	}
 
 	@Override
@@ -0,0 +1,244 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.List;
+
+// walks a resolved tree replacing nodes. Each visit rewrites the node's
+// children and returns the node to put in its place, passes such as the
+// Folder and the Fuser override the visits of the nodes they change
+
+abstract class Rewriter implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+
+	void rewrite(List<Stmt> statements) {
+		for (int i = 0; i < statements.size(); i++) {
+			statements.set(i, rewrite(statements.get(i)));
+		}
+	}
+
+	Stmt rewrite(Stmt stmt) {
+		return stmt == null ? null : stmt.accept(this);
+	}
+
+	Expr rewrite(Expr expr) {
+		return expr == null ? null : expr.accept(this);
+	}
+
+	void rewriteExpressions(List<Expr> expressions) {
+		for (int i = 0; i < expressions.size(); i++) {
+			expressions.set(i, rewrite(expressions.get(i)));
+		}
+	}
+
+	@Override
+	public Stmt visitBlockStmt(Stmt.Block stmt) {
+		// a do-while's body is shared with the loop after it, the compiler
+		// looks for that shape so it stays a loop with the one body
+		if (Compiler.isDoWhile(stmt)) {
+			Stmt.While loop = (Stmt.While) stmt.statements.get(1);
+			loop.condition = rewrite(loop.condition);
+			loop.body = rewrite(loop.body);
+			stmt.statements.set(0, loop.body);
+			return stmt;
+		}
+		rewrite(stmt.statements);
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitBreakStmt(Stmt.Break stmt) {
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitClassStmt(Stmt.Class stmt) {
+		for (Stmt.Function method : stmt.methods)
+			rewrite(method.function.body);
+		for (Stmt.Function method : stmt.classMethods)
+			rewrite(method.function.body);
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitContinueStmt(Stmt.Continue stmt) {
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+		stmt.expression = rewrite(stmt.expression);
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitFunctionStmt(Stmt.Function stmt) {
+		rewrite(stmt.function.body);
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitForStmt(Stmt.For stmt) {
+		stmt.initializer = rewrite(stmt.initializer);
+		stmt.condition = rewrite(stmt.condition);
+		stmt.increment = rewrite(stmt.increment);
+		stmt.body = rewrite(stmt.body);
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitIfStmt(Stmt.If stmt) {
+		stmt.condition = rewrite(stmt.condition);
+		stmt.thenBranch = rewrite(stmt.thenBranch);
+		stmt.elseBranch = rewrite(stmt.elseBranch);
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitReturnStmt(Stmt.Return stmt) {
+		stmt.value = rewrite(stmt.value);
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitVarStmt(Stmt.Var stmt) {
+		stmt.initializer = rewrite(stmt.initializer);
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitWhileStmt(Stmt.While stmt) {
+		stmt.condition = rewrite(stmt.condition);
+		stmt.body = rewrite(stmt.body);
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitMethodCallStmt(Stmt.MethodCall stmt) {
+		return stmt;
+	}
+
+	@Override
+	public Expr visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+		rewriteExpressions(expr.values);
+		return expr;
+	}
+
+	@Override
+	public Expr visitBinaryExpr(Expr.Binary expr) {
+		expr.left = rewrite(expr.left);
+		expr.right = rewrite(expr.right);
+		return expr;
+	}
+
+	@Override
+	public Expr visitCallExpr(Expr.Call expr) {
+		expr.callee = rewrite(expr.callee);
+		rewriteExpressions(expr.arguments);
+		return expr;
+	}
+
+	@Override
+	public Expr visitGetExpr(Expr.Get expr) {
+		expr.object = rewrite(expr.object);
+		expr.index = rewrite(expr.index);
+		return expr;
+	}
+
+	@Override
+	public Expr visitGroupingExpr(Expr.Grouping expr) {
+		expr.expression = rewrite(expr.expression);
+		return expr;
+	}
+
+	@Override
+	public Expr visitLiteralExpr(Expr.Literal expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitLogicalExpr(Expr.Logical expr) {
+		expr.left = rewrite(expr.left);
+		expr.right = rewrite(expr.right);
+		return expr;
+	}
+
+	@Override
+	public Expr visitSetExpr(Expr.Set expr) {
+		expr.object = rewrite(expr.object);
+		expr.index = rewrite(expr.index);
+		expr.value = rewrite(expr.value);
+		return expr;
+	}
+
+	@Override
+	public Expr visitSuperExpr(Expr.Super expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitTernaryExpr(Expr.Ternary expr) {
+		expr.expr = rewrite(expr.expr);
+		expr.thenBranch = rewrite(expr.thenBranch);
+		expr.elseBranch = rewrite(expr.elseBranch);
+		return expr;
+	}
+
+	@Override
+	public Expr visitThisExpr(Expr.This expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitUnaryExpr(Expr.Unary expr) {
+		expr.right = rewrite(expr.right);
+		return expr;
+	}
+
+	@Override
+	public Expr visitVariableExpr(Expr.Variable expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitAssignExpr(Expr.Assign expr) {
+		expr.value = rewrite(expr.value);
+		return expr;
+	}
+
+	@Override
+	public Expr visitFunctionExpr(Expr.Function expr) {
+		rewrite(expr.body);
+		return expr;
+	}
+
+	@Override
+	public Expr visitInlineExpr(Expr.Inline expr) {
+		rewriteExpressions(expr.arguments);
+		expr.body = rewrite(expr.body);
+		return expr;
+	}
+
+	@Override
+	public Expr visitIntrinsicExpr(Expr.Intrinsic expr) {
+		rewriteExpressions(expr.arguments);
+		return expr;
+	}
+
+	@Override
+	public Expr visitIncrementLocalExpr(Expr.IncrementLocal expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitCompoundLocalExpr(Expr.CompoundLocal expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitIndexLocalExpr(Expr.IndexLocal expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitCompareLocalExpr(Expr.CompareLocal expr) {
+		return expr;
+	}
+}
@@ -0,0 +1,104 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.*;
+
+// collects what the code of one frame declares, reads and assigns,
+// without going into the functions declared in it, along with the
+// globals assigned anywhere. Used by the Inliner, the Eliminator, the
+// Typer and Intrinsics
+
+class Scan extends Rewriter {
+	// local functions declared in the frame
+	final List<Stmt.Function> functions = new ArrayList<>();
+	// slots of the frame read and assigned
+	final Set<Integer> reads = new HashSet<>();
+	final Set<Integer> assigned = new HashSet<>();
+	// names of the globals read and assigned, in the frame or any
+	// function in it
+	final Set<String> names = new HashSet<>();
+	final Set<String> globals = new HashSet<>();
+	// how many functions deep in the frame the scan is
+	private int depth = 0;
+
+	static Scan of(List<Stmt> statements) {
+		Scan scan = new Scan();
+		scan.rewrite(statements);
+		return scan;
+	}
+
+	// names of the globals the script declares or assigns, a built-in
+	// the script leaves out of these is known to keep its value
+	static Set<String> declared(List<Stmt> statements) {
+		Set<String> globals = new HashSet<>(of(statements).globals);
+		for (Stmt statement : statements) {
+			if (statement instanceof Stmt.Var)
+				globals.add(((Stmt.Var) statement).name.lexeme);
+			else if (statement instanceof Stmt.Function)
+				globals.add(((Stmt.Function) statement).name.lexeme);
+			else if (statement instanceof Stmt.Class)
+				globals.add(((Stmt.Class) statement).name.lexeme);
+		}
+		return globals;
+	}
+
+	@Override
+	public Stmt visitFunctionStmt(Stmt.Function stmt) {
+		if (depth == 0 && stmt.slot >= 0)
+			functions.add(stmt);
+		depth++;
+		super.visitFunctionStmt(stmt);
+		depth--;
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitClassStmt(Stmt.Class stmt) {
+		depth++;
+		super.visitClassStmt(stmt);
+		depth--;
+		return stmt;
+	}
+
+	@Override
+	public Expr visitFunctionExpr(Expr.Function expr) {
+		depth++;
+		super.visitFunctionExpr(expr);
+		depth--;
+		return expr;
+	}
+
+	@Override
+	public Expr visitVariableExpr(Expr.Variable expr) {
+		if (expr.kind == Expr.GLOBAL)
+			names.add(expr.name.lexeme);
+		else if (depth == 0 && expr.kind == Expr.LOCAL)
+			reads.add(expr.slot);
+		return expr;
+	}
+
+	@Override
+	public Expr visitAssignExpr(Expr.Assign expr) {
+		super.visitAssignExpr(expr);
+		assigned(expr.name, expr.kind, expr.slot);
+		return expr;
+	}
+
+	@Override
+	public Expr visitUnaryExpr(Expr.Unary expr) {
+		super.visitUnaryExpr(expr);
+		TokenType operator = expr.operator.type;
+		if ((operator == TokenType.PLUS_PLUS || operator == TokenType.MINUS_MINUS)
+				&& expr.right instanceof Expr.Variable) {
+			Expr.Variable variable = (Expr.Variable) expr.right;
+			assigned(variable.name, variable.kind, variable.slot);
+		}
+		return expr;
+	}
+
+	private void assigned(Token name, int kind, int slot) {
+		if (kind == Expr.GLOBAL)
+			globals.add(name.lexeme);
+		else if (kind == Expr.LOCAL && depth == 0)
+			assigned.add(slot);
+	}
+}
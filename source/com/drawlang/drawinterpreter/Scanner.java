@@ -34,6 +34,7 @@ public class Scanner {
 		keywords.put("static",      STATIC);
 		keywords.put("break",       BREAK);
 		keywords.put("continue",    CONTINUE);
+		keywords.put("const",       CONST);
 	}
 
 	Scanner(String source) {
@@ -0,0 +1,70 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.*;
+
+// hidden class describing where an instance keeps its fields. Instances
+// of a class that add the same fields in the same order share a shape,
+// which maps each field name to an index in the instance's slot array.
+// Adding a field moves an instance to the next shape along a transition.
+// Fields are known by the symbols of their names
+
+class Shape {
+	// instances with more fields than this switch to dictionary mode
+	static final int MAX_FIELDS = 64;
+
+	// shape of instances created without a class, such as natives
+	static final Shape ROOT = new Shape(null);
+	// shape of every instance in dictionary mode, it has no fields so
+	// lookups always fall through to the instance's map
+	static final Shape DICTIONARY = new Shape(null);
+
+	final DrawClass drawClass;
+	// number of fields, the next field added gets this index
+	final int size;
+	// symbols of the fields in slot order, a scan of these few ints is
+	// quicker than hashing the name
+	private final int[] symbols;
+	private final Map<Integer, Shape> transitions = new HashMap<>();
+
+	Shape(DrawClass drawClass) {
+		this.drawClass = drawClass;
+		this.size = 0;
+		this.symbols = new int[0];
+	}
+
+	private Shape(Shape parent, int symbol) {
+		this.drawClass = parent.drawClass;
+		this.size = parent.size + 1;
+		this.symbols = Arrays.copyOf(parent.symbols, size);
+		this.symbols[parent.size] = symbol;
+	}
+
+	// returns the slot of the field or -1 if the shape doesn't have it
+	int indexOf(int symbol) {
+		int[] symbols = this.symbols;
+		for (int i = 0; i < symbols.length; i++) {
+			if (symbols[i] == symbol)
+				return i;
+		}
+		return -1;
+	}
+
+	// returns the shape with the field added, or null when an instance
+	// would have too many fields to be worth a shape
+	Shape add(int symbol) {
+		if (size >= MAX_FIELDS || this == DICTIONARY)
+			return null;
+
+		Shape next = transitions.get(symbol);
+		if (next == null) {
+			next = new Shape(this, symbol);
+			transitions.put(symbol, next);
+		}
+		return next;
+	}
+
+	// symbol of the field in the slot
+	int symbolAt(int index) {
+		return symbols[index];
+	}
+}
@@ -2,7 +2,8 @@ package com.drawlang.drawinterpreter;
 
 import java.util.List;
 
-// similar to Expr.java - creates a syntax tree of statements
+// similar to Expr.java - creates a syntax tree of statements, whose
+// children passes after the resolver can replace
 
 abstract class Stmt {
 	interface Visitor <R> {
@@ -12,10 +13,12 @@ abstract class Stmt {
 		R visitContinueStmt(Continue Stmt);
 		R visitExpressionStmt(Expression stmt);
 		R visitFunctionStmt(Function stmt);
+		R visitForStmt(For stmt);
 		R visitIfStmt(If stmt);
 		R visitReturnStmt(Return stmt);
 		R visitVarStmt(Var stmt);
 		R visitWhileStmt(While stmt);
+		R visitMethodCallStmt(MethodCall stmt);
 	}
 
 	static class Block extends Stmt {
@@ -55,6 +58,13 @@ abstract class Stmt {
 		final Expr superclass;
 		final List<Stmt.Function> methods;
 		final List<Stmt.Function> classMethods;
+		// slot the class is stored in, -1 if it is global
+		int slot = -1;
+		// set by the resolver when closures capture it, each run of the
+		// declaration then stores a new cell in the slot
+		boolean cell = false;
+		// slot of the cell the methods find the superclass in
+		int superSlot = -1;
 	}
 
 	static class Continue extends Stmt {
@@ -75,7 +85,7 @@ abstract class Stmt {
 			return visitor.visitExpressionStmt(this);
 		}
 
-		final Expr expression;
+		Expr expression;
 	}
 
 	static class Function extends Stmt {
@@ -90,6 +100,36 @@ abstract class Stmt {
 
 		final Token name;
 		final Expr.Function function;
+		// slot the function is stored in, -1 if it is global
+		int slot = -1;
+		// set by the resolver when closures capture it, each run of the
+		// declaration then stores a new cell in the slot
+		boolean cell = false;
+	}
+
+	static class For extends Stmt {
+		For(Stmt initializer, Expr condition, Expr increment, Stmt body) {
+			this.initializer = initializer;
+			this.condition = condition;
+			this.increment = increment;
+			this.body = body;
+		}
+
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitForStmt(this);
+		}
+
+		// any of the clauses can be left out, a loop without a
+		// condition runs until it breaks or returns
+		Stmt initializer;
+		Expr condition;
+		Expr increment;
+		Stmt body;
+		// set by the resolver for loops shaped like for (var i = a; i < b; i++)
+		// whose body doesn't assign i, the interpreter then counts in a
+		// double and adds step after each iteration
+		boolean counted = false;
+		double step;
 	}
 
 	static class If extends Stmt {
@@ -103,9 +143,9 @@ abstract class Stmt {
 			return visitor.visitIfStmt(this);
 		}
 
-		final Expr condition;
-		final Stmt thenBranch;
-		final Stmt elseBranch;
+		Expr condition;
+		Stmt thenBranch;
+		Stmt elseBranch;
 	}
 
 	static class Return extends Stmt {
@@ -119,7 +159,7 @@ abstract class Stmt {
 		}
 
 		final Token keyword;
-		final Expr value;
+		Expr value;
 	}
 
 	static class Var extends Stmt {
@@ -133,7 +173,14 @@ abstract class Stmt {
 		}
 
 		final Token name;
-		final Expr initializer;
+		Expr initializer;
+		// slot the variable is stored in, -1 if it is global
+		int slot = -1;
+		// set by the resolver when closures capture it, each run of the
+		// declaration then stores a new cell in the slot
+		boolean cell = false;
+		// declared with const, it can not be assigned to
+		boolean constant = false;
 	}
 
 	static class While extends Stmt {
@@ -146,8 +193,22 @@ abstract class Stmt {
 			return visitor.visitWhileStmt(this);
 		}
 
-		final Expr condition;
-		final Stmt body;
+		Expr condition;
+		Stmt body;
+	}
+
+	// a statement such as canvas.method(args) that only calls a method,
+	// put in place of the expression statement by the Fuser
+	static class MethodCall extends Stmt {
+		MethodCall(Expr.Call call) {
+			this.call = call;
+		}
+
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitMethodCallStmt(this);
+		}
+
+		final Expr.Call call;
 	}
 
 	abstract <R> R accept(Visitor<R> visitor);
@@ -0,0 +1,40 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.*;
+
+// interns the names scripts use. Each name gets a small integer id the
+// first time it is seen, kept for every run after, so shapes, classes,
+// the globals and the natives look names up by comparing or indexing
+// ints rather than hashing strings. Identifier tokens carry the id of
+// their lexeme from the scanner on
+
+class Symbols {
+	private static final Map<String, Integer> ids = new HashMap<>();
+
+	// names the runtime looks up itself
+	static final int INIT = intern("init");
+	static final int LENGTH = intern("length");
+	static final int WIDTH = intern("width");
+	static final int HEIGHT = intern("height");
+	static final int E = intern("E");
+	static final int PI = intern("PI");
+	static final int R = intern("r");
+	static final int G = intern("g");
+	static final int B = intern("b");
+	static final int A = intern("a");
+	static final int MATH = intern("Math");
+
+	private Symbols() {
+	}
+
+	// returns the id of the name, giving it the next one the first time.
+	// Scripts are scanned on the ui thread and run on their own
+	static synchronized int intern(String name) {
+		Integer id = ids.get(name);
+		if (id != null)
+			return id;
+		id = ids.size();
+		ids.put(name, id);
+		return id;
+	}
+}
@@ -7,12 +7,16 @@ public class Token {
 	final String lexeme; 
 	final Object literal;
 	final int line; //the line number
+	// id of the lexeme in Symbols for names, -1 for other tokens
+	final int symbol;
 
 	Token(TokenType type, String lexeme, Object literal, int line) {
 		this.type = type;
 		this.lexeme = lexeme;
 		this.literal = literal;
 		this.line = line; 
+		this.symbol = type == TokenType.IDENTIFIER || type == TokenType.THIS || type == TokenType.SUPER
+				? Symbols.intern(lexeme) : -1;
 	}
 
 	public String toString() {
@@ -26,7 +26,7 @@ public enum TokenType {
 	// Keywords.
 	,AND, CLASS, ELSE, FALSE, FUNCTION, FOR, IF, NULL, OR,
 	PRINT, RETURN, SUPER, THIS, TRUE, VAR, DO, WHILE, EXTENDS,
-	STATIC, BREAK, CONTINUE,
+	STATIC, BREAK, CONTINUE, CONST,
 
 	EOF
 	
@@ -0,0 +1,234 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.*;
+
+// finds the locals that only ever hold numbers and the binary operators
+// whose operands are always numbers, so the tree walker can run them
+// without checking the types of their operands. A local is a number
+// when every value stored in it is: a number literal, the result of
+// arithmetic, a counter stepped with ++ or --, a Math function or
+// another such local. Anything it can't prove keeps its checks. Runs
+// after the Eliminator, turned off with -Ddraw.infer=false
+
+class Typer extends Rewriter {
+	// globals the script declares or assigns, Math is only known to be
+	// the built-in when it isn't one
+	private final Set<String> globals;
+	// slots of the frame being typed that only ever hold numbers
+	private Set<Integer> numbers;
+	// the values stored in each slot of the frame: initializers,
+	// assignments, ++ and -- and the arguments of inlined calls
+	private Map<Integer, List<Expr>> writes;
+	// functions declared in the frame, typed after it
+	private List<Expr.Function> functions;
+	// set once the frame's slots are solved and its nodes are marked
+	private boolean marking;
+
+	private Typer(Set<String> globals) {
+		this.globals = globals;
+	}
+
+	static void infer(List<Stmt> statements) {
+		new Typer(Scan.declared(statements)).frame(statements);
+	}
+
+	private void frame(List<Stmt> body) {
+		numbers = new HashSet<>();
+		writes = new HashMap<>();
+		functions = new ArrayList<>();
+		marking = false;
+		rewrite(body);
+		solve();
+		marking = true;
+		rewrite(body);
+
+		List<Expr.Function> declared = functions;
+		for (Expr.Function function : declared)
+			frame(function.body);
+	}
+
+	// starts from every slot holding a number and drops the ones given a
+	// value not known to be one until none are left to drop
+	private void solve() {
+		numbers.retainAll(writes.keySet());
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Map.Entry<Integer, List<Expr>> slot : writes.entrySet()) {
+				if (!numbers.contains(slot.getKey()))
+					continue;
+				for (Expr value : slot.getValue()) {
+					if (!isNumber(value)) {
+						numbers.remove(slot.getKey());
+						changed = true;
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	private void write(int slot, Expr value) {
+		writes.computeIfAbsent(slot, key -> new ArrayList<>()).add(value);
+	}
+
+	// whether the expression always gives a number, or raises an error
+	private boolean isNumber(Expr expr) {
+		if (expr instanceof Expr.Literal)
+			return ((Expr.Literal) expr).value instanceof Double;
+		if (expr instanceof Expr.Variable) {
+			Expr.Variable variable = (Expr.Variable) expr;
+			return variable.kind == Expr.LOCAL && numbers.contains(variable.slot);
+		}
+		if (expr instanceof Expr.Grouping)
+			return isNumber(((Expr.Grouping) expr).expression);
+		if (expr instanceof Expr.Binary) {
+			Expr.Binary binary = (Expr.Binary) expr;
+			switch (binary.operator.type) {
+				case MINUS:
+				case STAR:
+				case SLASH:
+				case MODULOS:
+				case STAR_STAR:
+					return true;
+				case PLUS:
+					return isNumber(binary.left) && isNumber(binary.right);
+				default:
+					return false;
+			}
+		}
+		if (expr instanceof Expr.Unary) {
+			switch (((Expr.Unary) expr).operator.type) {
+				case MINUS:
+				case PLUS_PLUS:
+				case MINUS_MINUS:
+					return true;
+				default:
+					return false;
+			}
+		}
+		if (expr instanceof Expr.Assign) {
+			Expr.Assign assign = (Expr.Assign) expr;
+			switch (assign.equals.type) {
+				case EQUAL:
+					return isNumber(assign.value);
+				case PLUS_EQUAL:
+					return assign.kind == Expr.LOCAL && numbers.contains(assign.slot) && isNumber(assign.value);
+				default:
+					return true;
+			}
+		}
+		if (expr instanceof Expr.Ternary) {
+			Expr.Ternary ternary = (Expr.Ternary) expr;
+			return isNumber(ternary.thenBranch) && isNumber(ternary.elseBranch);
+		}
+		if (expr instanceof Expr.Logical) {
+			Expr.Logical logical = (Expr.Logical) expr;
+			return isNumber(logical.left) && isNumber(logical.right);
+		}
+		if (expr instanceof Expr.Inline)
+			return isNumber(((Expr.Inline) expr).body);
+		if (expr instanceof Expr.Intrinsic)
+			return Intrinsics.isMath(((Expr.Intrinsic) expr).function);
+		if (expr instanceof Expr.Call) {
+			// every Math function gives a number
+			Expr callee = ((Expr.Call) expr).callee;
+			return callee instanceof Expr.Get && isMath((Expr.Get) callee)
+					&& DrawMath.METHODS.idOf(((Expr.Get) callee).name.symbol) >= 0;
+		}
+		if (expr instanceof Expr.Get) {
+			Expr.Get get = (Expr.Get) expr;
+			return isMath(get) && (get.name.symbol == Symbols.PI || get.name.symbol == Symbols.E);
+		}
+		return false;
+	}
+
+	// whether the expression is Math.name on the built-in Math
+	private boolean isMath(Expr.Get get) {
+		if (get.index != null || !(get.object instanceof Expr.Variable))
+			return false;
+		Expr.Variable object = (Expr.Variable) get.object;
+		return object.kind == Expr.GLOBAL && object.name.lexeme.equals("Math") && !globals.contains("Math");
+	}
+
+	@Override
+	public Stmt visitVarStmt(Stmt.Var stmt) {
+		super.visitVarStmt(stmt);
+		// a variable declared without a value starts as null
+		if (!marking && stmt.slot >= 0 && !stmt.cell && stmt.initializer != null) {
+			numbers.add(stmt.slot);
+			write(stmt.slot, stmt.initializer);
+		}
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitFunctionStmt(Stmt.Function stmt) {
+		if (!marking)
+			functions.add(stmt.function);
+		return stmt;
+	}
+
+	@Override
+	public Stmt visitClassStmt(Stmt.Class stmt) {
+		if (!marking) {
+			for (Stmt.Function method : stmt.methods)
+				functions.add(method.function);
+			for (Stmt.Function method : stmt.classMethods)
+				functions.add(method.function);
+		}
+		return stmt;
+	}
+
+	@Override
+	public Expr visitFunctionExpr(Expr.Function expr) {
+		if (!marking)
+			functions.add(expr);
+		return expr;
+	}
+
+	@Override
+	public Expr visitAssignExpr(Expr.Assign expr) {
+		super.visitAssignExpr(expr);
+		if (!marking && expr.kind == Expr.LOCAL)
+			write(expr.slot, expr);
+		return expr;
+	}
+
+	@Override
+	public Expr visitUnaryExpr(Expr.Unary expr) {
+		super.visitUnaryExpr(expr);
+		TokenType operator = expr.operator.type;
+		if (!marking && (operator == TokenType.PLUS_PLUS || operator == TokenType.MINUS_MINUS)
+				&& expr.right instanceof Expr.Variable && ((Expr.Variable) expr.right).kind == Expr.LOCAL)
+			write(((Expr.Variable) expr.right).slot, expr);
+		return expr;
+	}
+
+	@Override
+	public Expr visitInlineExpr(Expr.Inline expr) {
+		super.visitInlineExpr(expr);
+		if (!marking) {
+			for (int i = 0; i < expr.slots.length; i++) {
+				numbers.add(expr.slots[i]);
+				write(expr.slots[i], expr.arguments.get(i));
+			}
+		}
+		return expr;
+	}
+
+	@Override
+	public Expr visitVariableExpr(Expr.Variable expr) {
+		if (marking && expr.kind == Expr.LOCAL)
+			expr.number = numbers.contains(expr.slot);
+		return expr;
+	}
+
+	@Override
+	public Expr visitBinaryExpr(Expr.Binary expr) {
+		super.visitBinaryExpr(expr);
+		if (marking && expr.operator.type != TokenType.COMMA && isNumber(expr.left) && isNumber(expr.right))
+			expr.state = Interpreter.PROVEN;
+		return expr;
+	}
+}
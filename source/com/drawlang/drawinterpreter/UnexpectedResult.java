@@ -0,0 +1,13 @@
+package com.drawlang.drawinterpreter;
+
+// thrown by Interpreter.evaluateDouble when an expression didn't give a
+// number, carrying the value it gave instead
+
+class UnexpectedResult extends RuntimeException {
+	final Object value;
+
+	UnexpectedResult(Object value) {
+		super(null, null, false, false);
+		this.value = value;
+	}
+}
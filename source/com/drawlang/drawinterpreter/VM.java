@@ -0,0 +1,533 @@
+package com.drawlang.drawinterpreter;
+
+import java.util.*;
+
+import static com.drawlang.drawinterpreter.OpCode.*;
+
+// executes compiled chunks with a dispatch loop over the code array and a
+// shared operand stack. Natives and globals come from the interpreter so
+// both engines run scripts against the same built in functions
+
+class VM {
+	private final Interpreter interpreter;
+	private Object[] stack = new Object[256];
+	// first free position on the operand stack
+	private int sp = 0;
+
+	VM(Interpreter interpreter) {
+		this.interpreter = interpreter;
+	}
+
+	void interpret(Chunk script) {
+		try {
+			run(script, new Environment(Environment.NO_CELLS, script.frameSize));
+		} catch (RuntimeError error) {
+			Draw.runtimeError(error);
+		} finally {
+			sp = 0;
+		}
+	}
+
+	// runs a chunk in a frame with its parameters filled in and returns
+	// the value of its return instruction
+	Object run(Chunk chunk, Environment frame) {
+		if (chunk.declaration != null)
+			frame.box(chunk.declaration);
+		int[] code = chunk.code;
+		Object[] constants = chunk.constants;
+		int sp = this.sp;
+		if (sp + chunk.maxStack > stack.length) {
+			stack = Arrays.copyOf(stack, Math.max(stack.length * 2, sp + chunk.maxStack));
+		}
+		Object[] stack = this.stack;
+		Globals globals = interpreter.globals;
+		// where the running function's values start on the stack
+		int base = sp;
+		int ip = 0;
+
+		while (true) {
+			switch (code[ip++]) {
+				case CONSTANT:
+					stack[sp++] = constants[code[ip++]];
+					break;
+				case NULL:
+					stack[sp++] = null;
+					break;
+				case TRUE:
+					stack[sp++] = true;
+					break;
+				case FALSE:
+					stack[sp++] = false;
+					break;
+				case POP:
+					sp--;
+					break;
+
+				case GET_LOCAL:
+					stack[sp++] = frame.values[code[ip++]];
+					break;
+				case SET_LOCAL:
+					frame.values[code[ip++]] = stack[sp - 1];
+					break;
+				case DEFINE_LOCAL:
+					frame.values[code[ip++]] = stack[--sp];
+					break;
+				case GET_CELL:
+					stack[sp++] = ((Cell) frame.values[code[ip++]]).value;
+					break;
+				case SET_CELL:
+					((Cell) frame.values[code[ip++]]).value = stack[sp - 1];
+					break;
+				case DEFINE_CELL:
+					frame.values[code[ip++]] = new Cell(stack[--sp]);
+					break;
+				case GET_CAPTURED:
+					stack[sp++] = frame.closure[code[ip++]].value;
+					break;
+				case SET_CAPTURED:
+					frame.closure[code[ip++]].value = stack[sp - 1];
+					break;
+
+				case GET_GLOBAL: {
+					int slot = code[ip++];
+					Token name = (Token) constants[code[ip++]];
+					stack[sp++] = globals.get(name, slot);
+					break;
+				}
+				case SET_GLOBAL: {
+					int slot = code[ip++];
+					Token name = (Token) constants[code[ip++]];
+					globals.assign(name, slot, stack[sp - 1]);
+					break;
+				}
+				case DEFINE_GLOBAL: {
+					Token name = (Token) constants[code[ip++]];
+					globals.define(name.symbol, stack[--sp]);
+					break;
+				}
+
+				case GET_PROPERTY: {
+					Token name = (Token) constants[code[ip++]];
+					Object object = stack[sp - 1];
+					if (!(object instanceof DrawInstance))
+						throw new RuntimeError(name, "Only instances have properties.");
+					stack[sp - 1] = ((DrawInstance) object).get(name);
+					break;
+				}
+				case SET_PROPERTY: {
+					Token name = (Token) constants[code[ip++]];
+					Object value = stack[--sp];
+					Object object = stack[sp - 1];
+					if (!(object instanceof DrawInstance))
+						throw new RuntimeError(name, "Only instances have fields.");
+					((DrawInstance) object).set(name, value);
+					stack[sp - 1] = value;
+					break;
+				}
+				case GET_INDEX: {
+					Token name = (Token) constants[code[ip++]];
+					Object index = stack[--sp];
+					Object object = stack[sp - 1];
+					if (object instanceof DrawArray)
+						stack[sp - 1] = ((DrawArray) object).get((int) (double) index);
+					else if (object instanceof DrawInstance)
+						stack[sp - 1] = ((DrawInstance) object).get(name);
+					else
+						throw new RuntimeError(name, "Only instances have properties.");
+					break;
+				}
+				case SET_INDEX: {
+					Token name = (Token) constants[code[ip++]];
+					Object index = stack[--sp];
+					Object value = stack[--sp];
+					Object object = stack[sp - 1];
+					if (!(object instanceof DrawInstance))
+						throw new RuntimeError(name, "Only instances have fields.");
+					if (object instanceof DrawArray)
+						((DrawArray) object).set((int) (double) index, value);
+					else
+						((DrawInstance) object).set(name, value);
+					stack[sp - 1] = value;
+					break;
+				}
+
+				case COMPOUND_PROPERTY: {
+					Token equals = (Token) constants[code[ip++]];
+					Token name = (Token) constants[code[ip++]];
+					Object value = stack[--sp];
+					stack[sp - 1] = compound(stack[sp - 1], null, equals, name, value);
+					break;
+				}
+				case COMPOUND_INDEX: {
+					Token equals = (Token) constants[code[ip++]];
+					Token name = (Token) constants[code[ip++]];
+					Object index = stack[--sp];
+					Object value = stack[--sp];
+					stack[sp - 1] = compound(stack[sp - 1], index, equals, name, value);
+					break;
+				}
+				case INCREMENT_PROPERTY: {
+					Token operator = (Token) constants[code[ip++]];
+					int delta = code[ip++];
+					boolean postfix = code[ip++] == 1;
+					Token name = (Token) constants[code[ip++]];
+					stack[sp - 1] = increment(stack[sp - 1], null, operator, delta, postfix, name);
+					break;
+				}
+				case INCREMENT_INDEX: {
+					Token operator = (Token) constants[code[ip++]];
+					int delta = code[ip++];
+					boolean postfix = code[ip++] == 1;
+					Token name = (Token) constants[code[ip++]];
+					Object index = stack[--sp];
+					stack[sp - 1] = increment(stack[sp - 1], index, operator, delta, postfix, name);
+					break;
+				}
+
+				case ADD: {
+					Token operator = (Token) constants[code[ip++]];
+					Object right = stack[--sp];
+					Object left = stack[sp - 1];
+					if (left instanceof Double && right instanceof Double)
+						stack[sp - 1] = Interpreter.box((double) left + (double) right);
+					else
+						stack[sp - 1] = Interpreter.add(operator, left, right);
+					break;
+				}
+				case SUBTRACT: {
+					Token operator = (Token) constants[code[ip++]];
+					Object right = stack[--sp];
+					Object left = stack[sp - 1];
+					Interpreter.checkNumberOperands(operator, left, right);
+					stack[sp - 1] = Interpreter.box((double) left - (double) right);
+					break;
+				}
+				case MULTIPLY: {
+					Token operator = (Token) constants[code[ip++]];
+					Object right = stack[--sp];
+					Object left = stack[sp - 1];
+					Interpreter.checkNumberOperands(operator, left, right);
+					stack[sp - 1] = Interpreter.box((double) left * (double) right);
+					break;
+				}
+				case DIVIDE: {
+					Token operator = (Token) constants[code[ip++]];
+					Object right = stack[--sp];
+					Object left = stack[sp - 1];
+					Interpreter.checkNumberOperands(operator, left, right);
+					stack[sp - 1] = (double) left / (double) right;
+					break;
+				}
+				case MODULOS: {
+					Token operator = (Token) constants[code[ip++]];
+					Object right = stack[--sp];
+					Object left = stack[sp - 1];
+					Interpreter.checkNumberOperands(operator, left, right);
+					stack[sp - 1] = Interpreter.box((double) left % (double) right);
+					break;
+				}
+				case POWER: {
+					Token operator = (Token) constants[code[ip++]];
+					Object right = stack[--sp];
+					Object left = stack[sp - 1];
+					Interpreter.checkNumberOperands(operator, left, right);
+					stack[sp - 1] = Math.pow((double) left, (double) right);
+					break;
+				}
+				case GREATER: {
+					Token operator = (Token) constants[code[ip++]];
+					Object right = stack[--sp];
+					Object left = stack[sp - 1];
+					Interpreter.checkNumberOperands(operator, left, right);
+					stack[sp - 1] = (double) left > (double) right;
+					break;
+				}
+				case GREATER_EQUAL: {
+					Token operator = (Token) constants[code[ip++]];
+					Object right = stack[--sp];
+					Object left = stack[sp - 1];
+					Interpreter.checkNumberOperands(operator, left, right);
+					stack[sp - 1] = (double) left >= (double) right;
+					break;
+				}
+				case LESS: {
+					Token operator = (Token) constants[code[ip++]];
+					Object right = stack[--sp];
+					Object left = stack[sp - 1];
+					Interpreter.checkNumberOperands(operator, left, right);
+					stack[sp - 1] = (double) left < (double) right;
+					break;
+				}
+				case LESS_EQUAL: {
+					Token operator = (Token) constants[code[ip++]];
+					Object right = stack[--sp];
+					Object left = stack[sp - 1];
+					Interpreter.checkNumberOperands(operator, left, right);
+					stack[sp - 1] = (double) left <= (double) right;
+					break;
+				}
+				case EQUAL: {
+					Object right = stack[--sp];
+					stack[sp - 1] = Interpreter.isEqual(stack[sp - 1], right);
+					break;
+				}
+				case NOT_EQUAL: {
+					Object right = stack[--sp];
+					stack[sp - 1] = !Interpreter.isEqual(stack[sp - 1], right);
+					break;
+				}
+				case NOT:
+					stack[sp - 1] = !Interpreter.isTruthy(stack[sp - 1]);
+					break;
+				case NEGATE: {
+					Token operator = (Token) constants[code[ip++]];
+					Interpreter.checkNumberOperand(operator, stack[sp - 1]);
+					stack[sp - 1] = -(double) stack[sp - 1];
+					break;
+				}
+
+				case INCREMENT: {
+					Token operator = (Token) constants[code[ip++]];
+					int delta = code[ip++];
+					boolean postfix = code[ip++] == 1;
+					Interpreter.checkNumberOperand(operator, stack[sp - 1]);
+					Object value = Interpreter.box((double) stack[sp - 1] + delta);
+					if (!postfix) stack[sp - 1] = value;
+					stack[sp++] = value;
+					break;
+				}
+				case COMPOUND: {
+					Token equals = (Token) constants[code[ip++]];
+					Object current = stack[--sp];
+					stack[sp - 1] = Interpreter.compoundAssign(equals, current, stack[sp - 1]);
+					break;
+				}
+
+				case JUMP:
+					ip = code[ip];
+					break;
+				case JUMP_IF_FALSE: {
+					int target = code[ip++];
+					if (!Interpreter.isTruthy(stack[--sp]))
+						ip = target;
+					break;
+				}
+				case JUMP_IF_FALSE_OR_POP: {
+					int target = code[ip++];
+					if (!Interpreter.isTruthy(stack[sp - 1]))
+						ip = target;
+					else
+						sp--;
+					break;
+				}
+				case JUMP_IF_TRUE_OR_POP: {
+					int target = code[ip++];
+					if (Interpreter.isTruthy(stack[sp - 1]))
+						ip = target;
+					else
+						sp--;
+					break;
+				}
+
+				case CALL:
+				case TAIL_CALL: {
+					boolean tail = code[ip - 1] == TAIL_CALL;
+					int argCount = code[ip++];
+					Token paren = (Token) constants[code[ip++]];
+					Object callee = stack[sp - argCount - 1];
+					if (!(callee instanceof DrawCallable))
+						throw new RuntimeError(paren, "Can only call functions and classes.");
+
+					DrawCallable function = (DrawCallable) callee;
+					if (argCount != function.arity()) {
+						throw new RuntimeError(paren,
+								"Expected " + function.arity() + " arguments but got " + argCount + ".");
+					}
+
+					Object result;
+					if (callee instanceof VMFunction) {
+						// compiled functions take their arguments straight
+						// from the stack into the new environment
+						VMFunction called = (VMFunction) callee;
+						// a function calling itself in tail position reuses
+						// its frame, closures made in it hold cells instead
+						Environment calleeFrame;
+						if (tail && called.chunk == chunk && called.closure == frame.closure)
+							calleeFrame = frame;
+						else
+							calleeFrame = new Environment(called.closure, called.chunk.frameSize);
+						int first = 0;
+						if (called.declaration.isMethod)
+							calleeFrame.values[first++] = called.receiver;
+						System.arraycopy(stack, sp - argCount, calleeFrame.values, first, argCount);
+						sp -= argCount + 1;
+						if (tail) {
+							// carries on with the callee in this loop, so
+							// tail recursion doesn't grow the java stack
+							sp = base;
+							chunk = called.chunk;
+							code = chunk.code;
+							constants = chunk.constants;
+							frame = calleeFrame;
+							frame.box(chunk.declaration);
+							ip = 0;
+							if (sp + chunk.maxStack > stack.length) {
+								this.stack = stack = Arrays.copyOf(stack, Math.max(stack.length * 2, sp + chunk.maxStack));
+							}
+							break;
+						}
+						this.sp = sp;
+						result = run(called.chunk, calleeFrame);
+					} else {
+						Object[] arguments = new Object[argCount];
+						System.arraycopy(stack, sp - argCount, arguments, 0, argCount);
+						sp -= argCount + 1;
+						this.sp = sp;
+						result = function.call(interpreter, arguments);
+					}
+					if (tail)
+						return result;
+					// the call may have grown the stack
+					stack = this.stack;
+					stack[sp++] = result;
+					break;
+				}
+				case CLOSURE: {
+					Chunk function = (Chunk) constants[code[ip++]];
+					stack[sp++] = new VMFunction(function, frame.capture(function.declaration), this);
+					break;
+				}
+				case RETURN:
+					return stack[sp - 1];
+
+				case SUPERCLASS: {
+					Token name = (Token) constants[code[ip++]];
+					Object superclass = stack[--sp];
+					if (!(superclass instanceof DrawClass))
+						throw new RuntimeError(name, "Superclass must be a class");
+					frame.values[code[ip++]] = new Cell(superclass);
+					break;
+				}
+				case CLASS: {
+					Compiler.ClassTemplate template = (Compiler.ClassTemplate) constants[code[ip++]];
+					stack[sp++] = buildClass(template, frame);
+					break;
+				}
+				case GET_SUPER: {
+					Token method = (Token) constants[code[ip++]];
+					DrawClass superclass = (DrawClass) stack[--sp];
+					DrawInstance object = (DrawInstance) stack[sp - 1];
+					DrawFunction function = superclass.findMethod(object, method.symbol);
+					if (function == null)
+						throw new RuntimeError(method, "Undefined property '" + method.lexeme + "'.");
+					stack[sp - 1] = function;
+					break;
+				}
+
+				case ARRAY: {
+					int size = code[ip++];
+					DrawArray array = new DrawArray(size);
+					System.arraycopy(stack, sp - size, array.elements, 0, size);
+					sp -= size;
+					stack[sp++] = array;
+					break;
+				}
+				case INTRINSIC: {
+					int function = code[ip++];
+					int count = code[ip++];
+					Token name = (Token) constants[code[ip++]];
+					sp -= count;
+					stack[sp] = intrinsic(function, name, stack, sp, count);
+					sp++;
+					break;
+				}
+				case ERROR: {
+					Token token = (Token) constants[code[ip++]];
+					throw new RuntimeError(token, (String) constants[code[ip++]]);
+				}
+			}
+		}
+	}
+
+	private DrawClass buildClass(Compiler.ClassTemplate template, Environment frame) {
+		Stmt.Class stmt = template.stmt;
+		DrawClass superclass = stmt.superclass != null ? (DrawClass) ((Cell) frame.values[stmt.superSlot]).value : null;
+
+		Map<String, DrawFunction> classMethods = new HashMap<>();
+		for (Chunk method : template.classMethods) {
+			classMethods.put(method.name, new VMFunction(method, frame.capture(method.declaration), this));
+		}
+		DrawClass metaClass = new DrawClass(null, stmt.name.lexeme + " metaclass", null, classMethods);
+
+		Map<String, DrawFunction> methods = new HashMap<>();
+		for (Chunk method : template.methods) {
+			methods.put(method.name, new VMFunction(method, frame.capture(method.declaration), this));
+		}
+		return new DrawClass(metaClass, stmt.name.lexeme, superclass, methods);
+	}
+
+	// a compound assignment on an element, or a field when there's no
+	// index, returns the value stored
+	private static Object compound(Object object, Object index, Token equals, Token name, Object value) {
+		if (!(object instanceof DrawInstance))
+			throw new RuntimeError(name, "Only instances have fields.");
+		if (object instanceof DrawArray && index != null) {
+			Object[] elements = ((DrawArray) object).elements;
+			int i = (int) (double) index;
+			return elements[i] = Interpreter.compoundAssign(equals, elements[i], value);
+		}
+		// a field the instance has is looked up once
+		DrawInstance instance = (DrawInstance) object;
+		int slot = instance.shape.indexOf(name.symbol);
+		if (slot >= 0)
+			return instance.slots[slot] = Interpreter.compoundAssign(equals, instance.slots[slot], value);
+		value = Interpreter.compoundAssign(equals, instance.get(name), value);
+		instance.set(name, value);
+		return value;
+	}
+
+	// runs an intrinsic on the count arguments from first on the stack,
+	// ones that aren't numbers are handed to the built-in to report
+	private Object intrinsic(int function, Token name, Object[] stack, int first, int count) {
+		if (function == Intrinsics.STR)
+			return new DrawString(Interpreter.stringify(stack[first]));
+		if (function == Intrinsics.CLOCK)
+			return (double) System.currentTimeMillis();
+		for (int i = first; i < first + count; i++) {
+			if (!(stack[i] instanceof Double))
+				return Intrinsics.call(interpreter, function, name, Arrays.copyOfRange(stack, first, first + count));
+		}
+		if (function == Intrinsics.COLOR)
+			return Intrinsics.color((double) stack[first], (double) stack[first + 1], (double) stack[first + 2],
+					(double) stack[first + 3]);
+		double a = count > 0 ? (double) stack[first] : 0;
+		double b = count > 1 ? (double) stack[first + 1] : 0;
+		return Intrinsics.math(function, a, b);
+	}
+
+	// ++ or -- on an element or field
+	private static Object increment(Object object, Object index, Token operator, int delta, boolean postfix, Token name) {
+		if (!(object instanceof DrawInstance))
+			throw new RuntimeError(name, "Only instances have fields.");
+		Object current;
+		Object value;
+		if (object instanceof DrawArray && index != null) {
+			Object[] elements = ((DrawArray) object).elements;
+			int i = (int) (double) index;
+			current = elements[i];
+			Interpreter.checkNumberOperand(operator, current);
+			value = elements[i] = Interpreter.box((double) current + delta);
+		} else {
+			DrawInstance instance = (DrawInstance) object;
+			int slot = instance.shape.indexOf(name.symbol);
+			current = slot >= 0 ? instance.slots[slot] : instance.get(name);
+			Interpreter.checkNumberOperand(operator, current);
+			value = Interpreter.box((double) current + delta);
+			if (slot >= 0)
+				instance.slots[slot] = value;
+			else
+				instance.set(name, value);
+		}
+		return postfix ? current : value;
+	}
+}
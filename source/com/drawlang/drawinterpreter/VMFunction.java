@@ -0,0 +1,31 @@
+package com.drawlang.drawinterpreter;
+
+// a function compiled to bytecode, runs on the vm instead of
+// walking the syntax tree
+
+class VMFunction extends DrawFunction {
+	final Chunk chunk;
+	private final VM vm;
+
+	VMFunction(Chunk chunk, Cell[] closure, VM vm) {
+		this(chunk, closure, vm, null);
+	}
+
+	private VMFunction(Chunk chunk, Cell[] closure, VM vm, DrawInstance receiver) {
+		super(chunk.name, chunk.declaration, closure, false, receiver);
+		this.chunk = chunk;
+		this.vm = vm;
+	}
+
+	@Override
+	DrawFunction bind(DrawInstance instance) {
+		return new VMFunction(chunk, closure, vm, instance);
+	}
+
+	// called when a native or class calls the function, calls
+	// from compiled code go straight to the vm
+	@Override
+	Object run(Interpreter interpreter, Environment frame) {
+		return vm.run(chunk, frame);
+	}
+}